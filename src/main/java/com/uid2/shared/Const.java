@@ -45,6 +45,7 @@ public class Const {
         public static final String OptOutProducerMaxReplicasProp = "optout_producer_max_replicas";
         public static final String OptOutDeltaRotateIntervalProp = "optout_delta_rotate_interval";
         public static final String OptOutDeltaBacktrackInDaysProp = "optout_delta_backtrack_in_days";
+        public static final String OptOutFullListingIntervalProp = "optout_full_listing_interval";
         public static final String OptOutPartitionIntervalProp = "optout_partition_interval";
         public static final String OptOutMaxPartitionsProp = "optout_max_partitions";
         public static final String OptOutS3FolderProp = "optout_s3_folder";
@@ -1,5 +1,7 @@
 package com.uid2.shared;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
@@ -17,7 +19,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 
 public class Utils {
     private static final Logger LOGGER = LoggerFactory.getLogger(Utils.class);
@@ -84,15 +88,7 @@ public class Utils {
     }
 
     public static byte[] streamToByteArray(InputStream stream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[1024];
-        while ((nRead = stream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
-        }
-
-        buffer.flush();
-        return buffer.toByteArray();
+        return stream.readAllBytes();
     }
 
     public static InputStream localFileToStream(Path filePath) throws FileNotFoundException {
@@ -122,6 +118,28 @@ public class Utils {
         return toJson(stream);
     }
 
+    // reads a json array of objects one element at a time, so only the current element is held in memory
+    // rather than the whole document; returns the number of elements. The stream is left open.
+    @SuppressWarnings("unchecked")
+    public static int forEachJsonObject(InputStream stream, Consumer<JsonObject> consumer) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(stream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("expected a json array, got " + parser.currentToken());
+            }
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                consumer.accept(new JsonObject(parser.readValueAs(Map.class)));
+                ++count;
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("expected a json object, got " + token);
+            }
+            return count;
+        }
+    }
+
     public static String toJson(Collection<String> strs) {
         try {
             return mapper.writeValueAsString(strs);
@@ -30,6 +30,15 @@ public class AttestationToken {
     // https://developer.mozilla.org/en-US/docs/Web/API/AesGcmParams
     private static final int GCM_IV_LENGTH = 12;
 
+    // Cipher instances are not thread-safe, but are cheap to re-init, so keep one per thread
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (Exception e) {
+            throw new IllegalStateException("AES/GCM/NoPadding is not available", e);
+        }
+    });
+
     public AttestationToken(String plaintext, Instant expiresAt) {
         this(plaintext, expiresAt.getEpochSecond(), generateNonce(), true);
     }
@@ -52,6 +61,17 @@ public class AttestationToken {
     }
 
     public static AttestationToken fromEncrypted(String encryptedToken, String paraphrase, String salt) {
+        final SecretKey key;
+        try {
+            key = getKeyFromPassword(paraphrase, salt);
+        } catch (Exception e) {
+            LOGGER.debug("failed to derive attestation token key: {}", e.getMessage());
+            return AttestationToken.Failed();
+        }
+        return fromEncrypted(encryptedToken, key);
+    }
+
+    public static AttestationToken fromEncrypted(String encryptedToken, SecretKey key) {
         try {
             String[] parts = encryptedToken.split("-");
             if (parts.length != 3) {
@@ -63,7 +83,7 @@ public class AttestationToken {
             String plainText = decrypt(
                     Base64.getDecoder().decode(parts[0]),
                     Base64.getDecoder().decode(parts[1]),
-                    paraphrase, salt);
+                    key);
             return fromPlaintext(plainText);
         } catch (Exception e) {
             LOGGER.debug("failed to decrypt attestation token: {}", e.getMessage());
@@ -71,18 +91,27 @@ public class AttestationToken {
         }
     }
 
-    private static String decrypt(byte[] cipherText, byte[] iv, String paraphrase, String salt) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        cipher.init(Cipher.DECRYPT_MODE, getKeyFromPassword(paraphrase, salt), new GCMParameterSpec(GCM_AUTHTAG_LENGTH_BYTE * 8, iv));
+    private static String decrypt(byte[] cipherText, byte[] iv, SecretKey key) throws Exception {
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_AUTHTAG_LENGTH_BYTE * 8, iv));
         byte[] plaintext = cipher.doFinal(cipherText);
         return new String(plaintext);
     }
 
     public String encode(String paraphrase, String salt) {
+        try {
+            return encode(getKeyFromPassword(paraphrase, salt));
+        } catch (Exception e) {
+            LOGGER.warn("error while deriving attestation token key: " + e.getMessage());
+        }
+        return null;
+    }
+
+    public String encode(SecretKey key) {
         try {
             GCMParameterSpec gcmParam = generateGcmParam();
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, getKeyFromPassword(paraphrase, salt), gcmParam);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, gcmParam);
             byte[] cipherText = cipher.doFinal(this.getPlaintext().getBytes());
             return String.format("%s-%s-g",
                     Base64.getEncoder().encodeToString(cipherText),
@@ -101,7 +130,11 @@ public class AttestationToken {
         return Instant.ofEpochSecond(expiresAt);
     }
 
-    private static SecretKey getKeyFromPassword(String paraphrase, String salt)
+    /**
+     * Derives the AES key used to encrypt attestation tokens. This runs PBKDF2 with 65536 iterations,
+     * so callers validating tokens repeatedly should derive the key once and reuse it.
+     */
+    public static SecretKey getKeyFromPassword(String paraphrase, String salt)
             throws NoSuchAlgorithmException, InvalidKeySpecException
     {
         SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
@@ -1,5 +1,8 @@
 package com.uid2.shared.attest;
 
+import javax.crypto.SecretKey;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -7,8 +10,7 @@ import java.util.concurrent.ThreadLocalRandom;
 
 public class AttestationTokenService implements IAttestationTokenService {
 
-    private final String encryptionKey;
-    private final String encryptionSalt;
+    private final SecretKey secretKey;
     private final long expiresAfterSeconds;
     private final ThreadLocalRandom random;
     private final Clock clock;
@@ -23,8 +25,7 @@ public class AttestationTokenService implements IAttestationTokenService {
     }
 
     public AttestationTokenService(String encryptionKey, String encryptionSalt, long expiresAfterSeconds, ThreadLocalRandom random, Clock clock) {
-        this.encryptionKey = encryptionKey;
-        this.encryptionSalt = encryptionSalt;
+        this.secretKey = deriveSecretKey(encryptionKey, encryptionSalt);
         this.expiresAfterSeconds = expiresAfterSeconds;
         this.random = random;
         this.clock = clock;
@@ -35,22 +36,39 @@ public class AttestationTokenService implements IAttestationTokenService {
         long randomOffset = this.random.nextLong(300, 600); // random time between 5 and 10 minutes more to create some variation between when operators expire
         Instant expiresAt = this.clock.instant().plus(this.expiresAfterSeconds + randomOffset, ChronoUnit.SECONDS);
         AttestationToken attToken = new AttestationToken(userToken, expiresAt);
-        return new EncryptedAttestationToken(attToken.encode(encryptionKey, encryptionSalt), expiresAt);
+        return new EncryptedAttestationToken(attToken.encode(secretKey), expiresAt);
     }
 
     @Deprecated
     @Override
     public String createToken(String userToken, Instant expiresAt) {
         AttestationToken attToken = new AttestationToken(userToken, expiresAt);
-        return attToken.encode(encryptionKey, encryptionSalt);
+        return attToken.encode(secretKey);
     }
 
     @Override
     public boolean validateToken(String userToken, String attestationToken) {
+        return validateTokenAndGetExpiry(userToken, attestationToken) != null;
+    }
+
+    @Override
+    public boolean reportsExpiry() {
+        return true;
+    }
+
+    @Override
+    public Instant validateTokenAndGetExpiry(String userToken, String attestationToken) {
         AttestationToken decrypted = AttestationToken.fromEncrypted(
             attestationToken,
-            encryptionKey,
-            encryptionSalt);
-        return decrypted.validate(userToken);
+            secretKey);
+        return decrypted.validate(userToken) ? decrypted.getExpiresAt() : null;
+    }
+
+    private static SecretKey deriveSecretKey(String encryptionKey, String encryptionSalt) {
+        try {
+            return AttestationToken.getKeyFromPassword(encryptionKey, encryptionSalt);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException("Unable to derive attestation token key", e);
+        }
     }
 }
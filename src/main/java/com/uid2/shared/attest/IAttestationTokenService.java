@@ -26,4 +26,23 @@ public interface IAttestationTokenService {
      * @return if the credential matches
      */
     boolean validateToken(String userToken, String attestationToken);
+
+    /**
+     * Whether validateTokenAndGetExpiry is supported, so a successful validation can be cached until the token expires
+     * @return false unless the implementation knows when its tokens expire
+     */
+    default boolean reportsExpiry() {
+        return false;
+    }
+
+    /**
+     * Validate if attestation is generated from the user token provided
+     * @param userToken
+     * @param attestationToken
+     * @return when the attestation token expires if the credential matches, otherwise null
+     * @throws UnsupportedOperationException if reportsExpiry is false
+     */
+    default Instant validateTokenAndGetExpiry(String userToken, String attestationToken) {
+        throw new UnsupportedOperationException("expiry is not reported by " + getClass().getName());
+    }
 }
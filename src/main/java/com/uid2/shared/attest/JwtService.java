@@ -1,14 +1,22 @@
 package com.uid2.shared.attest;
 
+import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.uid2.shared.Const;
 import io.vertx.core.json.JsonArray;
@@ -16,19 +24,60 @@ import io.vertx.core.json.JsonObject;
 import com.google.api.client.json.webtoken.JsonWebSignature;
 import com.google.api.client.json.webtoken.JsonWebToken;
 import com.google.auth.oauth2.TokenVerifier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JwtService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtService.class);
+    private static final int DEFAULT_VALIDATION_CACHE_MAX_ENTRIES = 1000;
+    // tells the validation cache metrics of each service apart
+    private static final AtomicInteger INSTANCE_COUNT = new AtomicInteger();
+
     private final JsonObject config;
+    private final Clock clock;
+    private final int validationCacheMaxEntries;
 
     private final HashSet<PublicKey> publicKeys = new HashSet<>();
 
+    // verifiers are immutable once built, so keep one list per (audience, issuer) instead of rebuilding them per call
+    private final ConcurrentHashMap<String, List<TokenVerifier>> tokenVerifiers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedValidation> validationCache = new ConcurrentHashMap<>();
+    private final Counter counterValidationCacheHits;
+    private final Counter counterValidationCacheMisses;
 
     public JwtService(JsonObject config) {
+        this(config, Clock.systemUTC(), DEFAULT_VALIDATION_CACHE_MAX_ENTRIES);
+    }
+
+    public JwtService(JsonObject config, Clock clock, int validationCacheMaxEntries) {
         this.config = config;
+        this.clock = clock;
+        this.validationCacheMaxEntries = validationCacheMaxEntries;
+
+        final String instance = String.valueOf(INSTANCE_COUNT.incrementAndGet());
+        // the gauge only holds a weak reference to the cache, so it doesn't keep the service alive
+        Gauge.builder("uid2.jwt_validation_cache.size", this.validationCache, Map::size)
+            .tag("instance", instance)
+            .description("gauge for how many successful JWT validations are cached")
+            .register(Metrics.globalRegistry);
+
+        // the hit rate is hits / (hits + misses), derived from these two counters when querying
+        this.counterValidationCacheHits = Counter
+            .builder("uid2.jwt_validation_cache.hits")
+            .tag("instance", instance)
+            .description("counter for how many JWT validations are served from the cache")
+            .register(Metrics.globalRegistry);
+
+        this.counterValidationCacheMisses = Counter
+            .builder("uid2.jwt_validation_cache.misses")
+            .tag("instance", instance)
+            .description("counter for how many JWT validations require verifying the signature")
+            .register(Metrics.globalRegistry);
+
         String keysData = config.getString(Const.Config.AwsKmsJwtSigningPublicKeysProp, "");
         String[] keys = keysData.split(",");
         if (keysData.isBlank() || keys == null || keys.length == 0) {
@@ -43,6 +92,8 @@ public class JwtService {
      * iss and aud values.
      * Checks the config value for the public keys. Will loop though all the keys in the config
      * so that when a key is rotated, or a new one give, we can still validate older tokens.
+     * Successful validations are cached until the token's exp claim, so repeat calls with the same
+     * token skip the signature verification.
      */
     public JwtValidationResponse validateJwt(String jwt, String audience, String issuer) throws ValidationException {
         if (audience == null || audience.isBlank()) {
@@ -60,26 +111,35 @@ public class JwtService {
             throw new ValidationException(Optional.of("Unable to get public keys. Validation can not continue"));
         }
 
-        Exception lastException = null;
+        final String cacheKey = getValidationCacheKey(jwt, audience, issuer);
+        final CachedValidation cached = this.validationCache.get(cacheKey);
+        if (cached != null) {
+            if (cached.expiresAtSeconds > this.clock.instant().getEpochSecond()) {
+                this.counterValidationCacheHits.increment();
+                // responses are mutable, so every caller gets its own
+                return cached.toResponse();
+            }
+            this.validationCache.remove(cacheKey, cached);
+        }
+        this.counterValidationCacheMisses.increment();
 
-        for (PublicKey key : this.publicKeys) {
-            var tokenVerifier = TokenVerifier.newBuilder()
-                    .setPublicKey(key)
-                    .setAudience(audience)
-                    .setIssuer(issuer)
-                    .build();
+        Exception lastException = null;
 
+        for (TokenVerifier tokenVerifier : getTokenVerifiers(audience, issuer)) {
             try {
                 // verify checks that the token has not expired
                 JsonWebSignature signature = tokenVerifier.verify(jwt);
                 JsonWebToken.Payload webToken = signature.getPayload();
-                response = new JwtValidationResponse(true)
-                        .withRoles(webToken.get("roles").toString())
-                        .withEnclaveId(webToken.get("enclaveId").toString())
-                        .withEnclaveType(webToken.get("enclaveType").toString())
-                        .withSiteId(Integer.valueOf(webToken.get("siteId").toString()))
-                        .withOperatorVersion(webToken.get("operatorVersion").toString())
-                        .withAudience(webToken.get("aud").toString());
+                final VerifiedClaims claims = new VerifiedClaims(
+                        webToken.get("roles").toString(),
+                        webToken.get("enclaveId").toString(),
+                        webToken.get("enclaveType").toString(),
+                        Integer.valueOf(webToken.get("siteId").toString()),
+                        webToken.get("operatorVersion").toString(),
+                        webToken.get("aud").toString());
+                response = claims.toResponse();
+
+                cacheValidation(cacheKey, claims, webToken.getExpirationTimeSeconds());
 
                 // return the first verified response
                 return response;
@@ -96,6 +156,51 @@ public class JwtService {
         return response;
     }
 
+    private List<TokenVerifier> getTokenVerifiers(String audience, String issuer) {
+        return this.tokenVerifiers.computeIfAbsent(audience + "\n" + issuer, k -> {
+            final List<TokenVerifier> verifiers = new ArrayList<>(this.publicKeys.size());
+            for (PublicKey key : this.publicKeys) {
+                verifiers.add(TokenVerifier.newBuilder()
+                        .setPublicKey(key)
+                        .setAudience(audience)
+                        .setIssuer(issuer)
+                        .setClock(this.clock::millis)
+                        .build());
+            }
+            return verifiers;
+        });
+    }
+
+    private void cacheValidation(String cacheKey, VerifiedClaims claims, Long expiresAtSeconds) {
+        if (expiresAtSeconds == null || this.validationCacheMaxEntries <= 0) {
+            return;
+        }
+
+        if (this.validationCache.size() >= this.validationCacheMaxEntries) {
+            final long now = this.clock.instant().getEpochSecond();
+            for (Map.Entry<String, CachedValidation> entry : this.validationCache.entrySet()) {
+                if (entry.getValue().expiresAtSeconds <= now) {
+                    this.validationCache.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            if (this.validationCache.size() >= this.validationCacheMaxEntries) {
+                return;
+            }
+        }
+
+        this.validationCache.put(cacheKey, new CachedValidation(claims, expiresAtSeconds));
+    }
+
+    private static String getValidationCacheKey(String jwt, String audience, String issuer) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = md.digest(jwt.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash) + "\n" + audience + "\n" + issuer;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     private void parsePublicKeysFromConfig(String[] publicKeys) {
         Arrays.stream(publicKeys).forEach(key -> {
             try {
@@ -131,6 +236,49 @@ public class JwtService {
         }
     }
 
+    // the claims of a verified token, immutable so that they can be shared between callers through the cache
+    private static class VerifiedClaims {
+        private final String roles;
+        private final String enclaveId;
+        private final String enclaveType;
+        private final Integer siteId;
+        private final String operatorVersion;
+        private final String audience;
+
+        VerifiedClaims(String roles, String enclaveId, String enclaveType, Integer siteId, String operatorVersion, String audience) {
+            this.roles = roles;
+            this.enclaveId = enclaveId;
+            this.enclaveType = enclaveType;
+            this.siteId = siteId;
+            this.operatorVersion = operatorVersion;
+            this.audience = audience;
+        }
+
+        JwtValidationResponse toResponse() {
+            return new JwtValidationResponse(true)
+                    .withRoles(this.roles)
+                    .withEnclaveId(this.enclaveId)
+                    .withEnclaveType(this.enclaveType)
+                    .withSiteId(this.siteId)
+                    .withOperatorVersion(this.operatorVersion)
+                    .withAudience(this.audience);
+        }
+    }
+
+    private static class CachedValidation {
+        private final VerifiedClaims claims;
+        private final long expiresAtSeconds;
+
+        CachedValidation(VerifiedClaims claims, long expiresAtSeconds) {
+            this.claims = claims;
+            this.expiresAtSeconds = expiresAtSeconds;
+        }
+
+        JwtValidationResponse toResponse() {
+            return this.claims.toResponse();
+        }
+    }
+
     public class ValidationException extends Exception {
         public ValidationException(Optional<String> message) {
             super(message == null ? "Validation Error" : message.orElse("Validation Error"));
@@ -1,7 +1,6 @@
 package com.uid2.shared.attest;
 
 import com.uid2.shared.Const;
-import com.uid2.shared.Utils;
 import com.uid2.shared.cloud.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -111,21 +110,24 @@ public class UidCoreClient implements IUidCoreClient, DownloadCloudStorage {
 
         String attestationToken = attestationTokenRetriever.getAttestationToken();
 
-        HttpResponse<String> httpResponse;
+        HttpResponse<InputStream> httpResponse;
         httpResponse = sendHttpRequest(path, attestationToken, jwtToken);
 
         // This should never happen, but keeping this part of the code just to be extra safe.
         if (httpResponse.statusCode() == 401) {
             LOGGER.info("Initial response from UID2 Core returned 401, performing attestation");
+            // the unread body holds on to the connection until closed
+            httpResponse.body().close();
             attestationTokenRetriever.attest();
             attestationToken = attestationTokenRetriever.getAttestationToken();
             httpResponse = sendHttpRequest(path, attestationToken, jwtToken);
         }
 
-        return Utils.convertHttpResponseToInputStream(httpResponse);
+        // the body is consumed by the caller as it arrives, rather than buffered here
+        return httpResponse.body();
     }
 
-    private HttpResponse<String> sendHttpRequest(String path, String attestationToken, String attestationJWT) throws IOException, InterruptedException {
+    private HttpResponse<InputStream> sendHttpRequest(String path, String attestationToken, String attestationJWT) throws IOException, InterruptedException {
         URI uri = URI.create(path);
         if (this.enforceHttps && !"https".equalsIgnoreCase(uri.getScheme())) {
             throw new IOException("UidCoreClient requires HTTPS connection");
@@ -146,9 +148,9 @@ public class UidCoreClient implements IUidCoreClient, DownloadCloudStorage {
             httpRequestBuilder.setHeader(Const.Attestation.AttestationJWTHeader, attestationJWT);
         }
         HttpRequest httpRequest = httpRequestBuilder.build();
-        HttpResponse<String> httpResponse;
+        HttpResponse<InputStream> httpResponse;
         try {
-            httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
         } catch (IOException | InterruptedException e) {
             LOGGER.error("Failed to send request with error: ", e);
             throw e;
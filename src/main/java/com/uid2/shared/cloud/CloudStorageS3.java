@@ -13,19 +13,50 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class CloudStorageS3 implements TaggableCloudStorage {
     private static final Logger LOGGER = LoggerFactory.getLogger(CloudStorageS3.class);
 
+    // prefixes listed concurrently by listAll
+    private static final int DEFAULT_LIST_CONCURRENCY = 8;
+    // downloadTo fetches objects of at least DEFAULT_RANGED_DOWNLOAD_THRESHOLD bytes as parallel ranged GETs
+    private static final long DEFAULT_RANGED_DOWNLOAD_THRESHOLD = 64L * 1024 * 1024;
+    private static final long DEFAULT_RANGED_DOWNLOAD_CHUNK_SIZE = 16L * 1024 * 1024;
+    private static final int DEFAULT_DOWNLOAD_CONCURRENCY = 8;
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+
     private final AmazonS3 s3;
     private final String bucket;
     private long preSignedUrlExpiryInSeconds = 3600;
+    private int listConcurrency = DEFAULT_LIST_CONCURRENCY;
+    private ExecutorService listExecutor = null;
+    private long rangedDownloadThreshold = DEFAULT_RANGED_DOWNLOAD_THRESHOLD;
+    private long rangedDownloadChunkSize = DEFAULT_RANGED_DOWNLOAD_CHUNK_SIZE;
+    private int downloadConcurrency = DEFAULT_DOWNLOAD_CONCURRENCY;
+    private ExecutorService downloadExecutor = null;
+
+    // for tests, or callers that build their own client
+    public CloudStorageS3(AmazonS3 s3, String bucket) {
+        this.s3 = s3;
+        this.bucket = bucket;
+    }
 
     public CloudStorageS3(String accessKeyId, String secretAccessKey, String region, String bucket, String s3Endpoint) {
         // Reading https://docs.aws.amazon.com/sdk-for-java/v1/developer-guide/credentials.html
@@ -135,6 +166,112 @@ public class CloudStorageS3 implements TaggableCloudStorage {
         }
     }
 
+    // downloads cloudPath into a local file, objects of at least the ranged download threshold are fetched
+    // as ranged GETs of chunk size in parallel and written in place with positional FileChannel writes;
+    // every range is fetched with the ETag of the first one, so a download never mixes two object versions,
+    // and the file is checked against the object's content length. The object is written to a temporary
+    // file that is renamed over target once complete
+    @Override
+    public void downloadTo(String cloudPath, Path target) throws CloudStorageException {
+        Path temp = null;
+        try {
+            temp = CloudUtils.createTempFileFor(target);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                downloadTo(cloudPath, channel);
+            }
+            CloudUtils.moveAtomically(temp, target);
+        } catch (Throwable t) {
+            if (temp != null) CloudUtils.deleteQuietly(temp);
+            if (t instanceof CloudStorageException) throw (CloudStorageException) t;
+            throw new CloudStorageException("s3 get error: " + t.getMessage(), t);
+        }
+    }
+
+    private void downloadTo(String cloudPath, FileChannel channel) throws Exception {
+        // the first range also tells the object size and ETag, so small objects need only this one request
+        final S3Object first;
+        try {
+            first = this.s3.getObject(new GetObjectRequest(bucket, cloudPath).withRange(0, rangedDownloadChunkSize - 1));
+        } catch (AmazonS3Exception e) {
+            // no range of an empty object is satisfiable
+            if (e.getStatusCode() == 416) return;
+            throw e;
+        }
+        final long length = first.getObjectMetadata().getInstanceLength();
+        final String etag = first.getObjectMetadata().getETag();
+        long written = writeRange(first, channel, 0);
+
+        if (written < length) {
+            if (length < rangedDownloadThreshold) {
+                written += writeRange(getRange(cloudPath, etag, written, length - 1), channel, written);
+            } else {
+                written += downloadRangesInParallel(cloudPath, etag, written, length, channel);
+            }
+        }
+
+        if (written != length || channel.size() != length) {
+            throw new CloudStorageException("s3 download size mismatch for " + cloudPath + ": expected " + length + ", got " + channel.size());
+        }
+    }
+
+    // concurrency takes effect before the first parallel download
+    public void setRangedDownload(long thresholdBytes, long chunkSizeBytes, int concurrency) {
+        this.rangedDownloadThreshold = thresholdBytes;
+        this.rangedDownloadChunkSize = chunkSizeBytes;
+        this.downloadConcurrency = concurrency;
+    }
+
+    private long downloadRangesInParallel(String cloudPath, String etag, long start, long length, FileChannel channel) throws Exception {
+        final ExecutorService executor = this.getDownloadExecutor();
+        final List<Future<Long>> ranges = new ArrayList<>();
+        for (long rangeStart = start; rangeStart < length; rangeStart += rangedDownloadChunkSize) {
+            final long from = rangeStart;
+            final long to = Math.min(length, rangeStart + rangedDownloadChunkSize) - 1;
+            ranges.add(executor.submit(() -> writeRange(getRange(cloudPath, etag, from, to), channel, from)));
+        }
+
+        long written = 0;
+        try {
+            for (Future<Long> range : ranges) {
+                written += range.get();
+            }
+        } catch (ExecutionException e) {
+            ranges.forEach(r -> r.cancel(true));
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (InterruptedException e) {
+            ranges.forEach(r -> r.cancel(true));
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        return written;
+    }
+
+    private S3Object getRange(String cloudPath, String etag, long from, long to) throws CloudStorageException {
+        S3Object range = this.s3.getObject(new GetObjectRequest(bucket, cloudPath)
+                .withRange(from, to)
+                .withMatchingETagConstraint(etag));
+        if (range == null) {
+            // the client returns null when the ETag constraint is not met
+            throw new CloudStorageException("s3 object changed during download: " + cloudPath);
+        }
+        return range;
+    }
+
+    private static long writeRange(S3Object range, FileChannel channel, long position) throws IOException {
+        try (InputStream input = range.getObjectContent()) {
+            final byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+            long written = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    written += channel.write(bytes, position + written);
+                }
+            }
+            return written;
+        }
+    }
+
     @Override
     public void delete(String cloudPath) throws CloudStorageException {
         try {
@@ -169,15 +306,79 @@ public class CloudStorageS3 implements TaggableCloudStorage {
 
     @Override
     public List<String> list(String prefix) throws CloudStorageException {
+        return list(prefix, null);
+    }
+
+    @Override
+    public List<String> list(String prefix, String startAfter) throws CloudStorageException {
+        List<String> s3Paths = new ArrayList<>();
+        listPages(prefix, startAfter, s3Paths::addAll);
+        return s3Paths;
+    }
+
+    @Override
+    public List<String> listAll(Collection<String> prefixes) throws CloudStorageException {
+        List<String> s3Paths = new ArrayList<>();
+        listAll(prefixes, s3Paths::addAll);
+        return s3Paths;
+    }
+
+    // lists independent prefixes concurrently on a bounded executor, pageHandler is called with the keys of
+    // each page as soon as it arrives; calls are serialized, but pages of different prefixes are interleaved
+    public void listAll(Collection<String> prefixes, Consumer<List<String>> pageHandler) throws CloudStorageException {
+        if (prefixes.size() <= 1) {
+            for (String prefix : prefixes) {
+                listPages(prefix, null, pageHandler);
+            }
+            return;
+        }
+
+        final Object handlerLock = new Object();
+        final Consumer<List<String>> serializedHandler = page -> {
+            synchronized (handlerLock) {
+                pageHandler.accept(page);
+            }
+        };
+
+        final ExecutorService executor = this.getListExecutor();
+        final List<Future<Void>> listings = new ArrayList<>(prefixes.size());
+        for (String prefix : prefixes) {
+            listings.add(executor.submit(() -> {
+                listPages(prefix, null, serializedHandler);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> listing : listings) {
+                listing.get();
+            }
+        } catch (ExecutionException e) {
+            listings.forEach(l -> l.cancel(true));
+            if (e.getCause() instanceof CloudStorageException) throw (CloudStorageException) e.getCause();
+            throw new CloudStorageException("s3 list error: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            listings.forEach(l -> l.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CloudStorageException("s3 list interrupted", e);
+        }
+    }
+
+    // takes effect before the first concurrent listing
+    public void setListConcurrency(int listConcurrency) {
+        this.listConcurrency = listConcurrency;
+    }
+
+    private void listPages(String prefix, String startAfter, Consumer<List<String>> pageHandler) throws CloudStorageException {
         try {
             ListObjectsV2Request req = new ListObjectsV2Request()
                     .withBucketName(bucket)
-                    .withPrefix(prefix);
+                    .withPrefix(prefix)
+                    .withStartAfter(startAfter);
             ListObjectsV2Result result = null;
             List<S3ObjectSummary> objects = null;
 
             int reqCount = 0;
-            List<String> s3Paths = new ArrayList<>();
             do {
                 result = this.s3.listObjectsV2(req);
                 objects = result.getObjectSummaries();
@@ -187,21 +388,45 @@ public class CloudStorageS3 implements TaggableCloudStorage {
                     LOGGER.trace("--> 1st key = " + objects.get(0).getKey());
                 }
 
+                List<String> s3Paths = new ArrayList<>(objects.size());
                 for (S3ObjectSummary os : objects) {
                     s3Paths.add(os.getKey());
                 }
+                pageHandler.accept(s3Paths);
 
                 if (result.isTruncated()) {
                     req.setContinuationToken(result.getNextContinuationToken());
                     LOGGER.trace("--> truncated, continuationtoken: " + req.getContinuationToken());
                 }
             } while (result.isTruncated());
-            return s3Paths;
         } catch (Throwable t) {
             throw new CloudStorageException("s3 list error: " + t.getMessage(), t);
         }
     }
 
+    private synchronized ExecutorService getListExecutor() {
+        if (this.listExecutor == null) {
+            this.listExecutor = newDaemonPool(this.listConcurrency, "s3-list-");
+        }
+        return this.listExecutor;
+    }
+
+    private synchronized ExecutorService getDownloadExecutor() {
+        if (this.downloadExecutor == null) {
+            this.downloadExecutor = newDaemonPool(this.downloadConcurrency, "s3-download-");
+        }
+        return this.downloadExecutor;
+    }
+
+    private static ExecutorService newDaemonPool(int threads, String namePrefix) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Override
     public URL preSignUrl(String cloudPath) throws CloudStorageException {
         try {
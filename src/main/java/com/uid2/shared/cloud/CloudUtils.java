@@ -15,12 +15,22 @@ import software.amazon.awssdk.services.kms.KmsClient;
 import software.amazon.awssdk.services.kms.KmsClientBuilder;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Collections;
 
 public class CloudUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(CloudUtils.class);
+    private static final int TRANSFER_BUFFER_SIZE = 1024 * 1024;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
     public static Proxy defaultProxy = getDefaultProxy();
 
     public static TaggableCloudStorage createStorage(String cloudBucket, JsonObject jsonConfig) {
@@ -106,6 +116,77 @@ public class CloudUtils {
         else return pathStr + "/";
     }
 
+    // a new empty file in the directory of target, so that it can be renamed over target atomically;
+    // it is a hidden file, see isTempFile, which directory scans are expected to skip
+    public static Path createTempFileFor(Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, "." + target.getFileName(), TEMP_FILE_SUFFIX);
+    }
+
+    public static boolean isTempFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(".") && name.endsWith(TEMP_FILE_SUFFIX);
+    }
+
+    // removes the temp files left behind in dir by downloads that were interrupted, e.g. by a restart
+    public static void deleteTempFiles(Path dir) {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, CloudUtils::isTempFile)) {
+            for (Path file : files) {
+                LOGGER.info("deleting stale temp file " + file);
+                deleteQuietly(file);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("unable to list " + dir + ": " + e.getMessage());
+        }
+    }
+
+    // renames temp over target, readers of target see either the old or the new file, never a partial one
+    public static void moveAtomically(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // copies src into dst from its current position, file sources are transferred by the OS without
+    // going through the java heap, other channels through a direct buffer
+    public static long transfer(ReadableByteChannel src, FileChannel dst) throws IOException {
+        long position = dst.position();
+        final long start = position;
+        if (src instanceof FileChannel) {
+            final FileChannel file = (FileChannel) src;
+            long remaining;
+            while ((remaining = file.size() - file.position()) > 0) {
+                final long transferred = dst.transferFrom(file, position, remaining);
+                if (transferred == 0) break;
+                file.position(file.position() + transferred);
+                position += transferred;
+            }
+        } else {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+            while (src.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += dst.write(buffer, position);
+                }
+                buffer.clear();
+            }
+        }
+        dst.position(position);
+        return position - start;
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("unable to delete " + path + ": " + e.getMessage());
+        }
+    }
+
     private static Proxy getDefaultProxy() {
         String httpProxy = System.getProperty("http_proxy");
         if (httpProxy != null && httpProxy.startsWith("socks5://")) {
@@ -2,20 +2,70 @@ package com.uid2.shared.cloud;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public interface ICloudStorage extends DownloadCloudStorage {
     void upload(String localPath, String cloudPath) throws CloudStorageException;
 
     void upload(InputStream input, String cloudPath) throws CloudStorageException;
 
+    // the local file cloudPath is stored in when this storage is backed by the local file system, null otherwise
+    default Path toFilePath(String cloudPath) {
+        return null;
+    }
+
+    // downloads cloudPath into a local file, written to a temporary file next to target and then renamed over
+    // it, so a partially downloaded file is never visible at target
+    default void downloadTo(String cloudPath, Path target) throws CloudStorageException {
+        Path temp = null;
+        try {
+            temp = CloudUtils.createTempFileFor(target);
+            try (InputStream input = download(cloudPath);
+                 ReadableByteChannel src = Channels.newChannel(input);
+                 FileChannel dst = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                CloudUtils.transfer(src, dst);
+            }
+            CloudUtils.moveAtomically(temp, target);
+        } catch (Exception e) {
+            if (temp != null) CloudUtils.deleteQuietly(temp);
+            if (e instanceof CloudStorageException) throw (CloudStorageException) e;
+            throw new CloudStorageException("download error: " + e.getMessage(), e);
+        }
+    }
+
     void delete(String cloudPath) throws CloudStorageException;
 
     void delete(Collection<String> cloudPaths) throws CloudStorageException;
 
     List<String> list(String prefix) throws CloudStorageException;
 
+    // lists paths under prefix that sort after startAfter (exclusive), a null startAfter lists all paths under prefix
+    // paths are compared as strings, which matches the order S3 uses for ascii keys
+    default List<String> list(String prefix, String startAfter) throws CloudStorageException {
+        List<String> paths = list(prefix);
+        if (startAfter == null) return paths;
+        return paths.stream()
+            .filter(p -> p.compareTo(startAfter) > 0)
+            .collect(Collectors.toList());
+    }
+
+    // lists paths under each of the prefixes, implementations may list independent prefixes concurrently
+    default List<String> listAll(Collection<String> prefixes) throws CloudStorageException {
+        List<String> paths = new ArrayList<>();
+        for (String prefix : prefixes) {
+            paths.addAll(list(prefix));
+        }
+        return paths;
+    }
+
     URL preSignUrl(String cloudPath) throws CloudStorageException;
 
     void setPreSignedUrlExpiry(long expiry);
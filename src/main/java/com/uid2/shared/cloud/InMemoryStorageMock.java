@@ -65,9 +65,16 @@ public class InMemoryStorageMock implements ICloudStorage {
 
     @Override
     public List<String> list(String prefix) throws CloudStorageException {
+        return list(prefix, null);
+    }
+
+    @Override
+    public List<String> list(String prefix, String startAfter) throws CloudStorageException {
         return cloudFileSystemMock.keySet()
                 .stream()
                 .filter(x -> x.startsWith(prefix))
+                .filter(x -> startAfter == null || x.compareTo(startAfter) > 0)
+                .sorted()
                 .collect(Collectors.toList());
     }
 
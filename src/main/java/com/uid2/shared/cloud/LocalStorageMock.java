@@ -8,10 +8,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -64,6 +66,21 @@ public class LocalStorageMock implements ICloudStorage {
         }
     }
 
+    @Override
+    public void downloadTo(String cloudPath, Path target) throws CloudStorageException {
+        Path temp = null;
+        try (FileChannel src = FileChannel.open(getAbsolutePath(cloudPath), StandardOpenOption.READ)) {
+            temp = CloudUtils.createTempFileFor(target);
+            try (FileChannel dst = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                CloudUtils.transfer(src, dst);
+            }
+            CloudUtils.moveAtomically(temp, target);
+        } catch (IOException e) {
+            if (temp != null) CloudUtils.deleteQuietly(temp);
+            throw new CloudStorageException("local download(copy) error: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void delete(String cloudPath) throws CloudStorageException {
         Path p = getAbsolutePath(cloudPath);
@@ -82,13 +99,20 @@ public class LocalStorageMock implements ICloudStorage {
 
     @Override
     public List<String> list(String prefix) throws CloudStorageException {
+        return list(prefix, null);
+    }
+
+    @Override
+    public List<String> list(String prefix, String startAfter) throws CloudStorageException {
         // Unlike other storage implementation, local storage doesn't return relative paths under the root
-        // It will always return absolute paths
+        // It will always return absolute paths, so startAfter is resolved the same way as prefix before comparing
         try {
             Path prefixPath = getAbsolutePath(prefix);
+            String startAfterPath = startAfter == null ? null : getAbsolutePath(startAfter).toString();
             if (!Files.exists(prefixPath)) return EMPTY_LIST;
             else return Files.find(prefixPath, Integer.MAX_VALUE, (filePath, fileAttr) -> fileAttr.isRegularFile())
                 .map(Path::toString)
+                .filter(p -> startAfterPath == null || p.compareTo(startAfterPath) > 0)
                 .collect(Collectors.toList());
         }
         catch (IOException e) {
@@ -114,6 +138,12 @@ public class LocalStorageMock implements ICloudStorage {
         return cloudPath;
     }
 
+    // the file a (relative or absolute) path refers to
+    @Override
+    public Path toFilePath(String cloudPath) {
+        return getAbsolutePath(cloudPath);
+    }
+
     // Local Storage is special, both relative path and absolute path works.
     // Internally we convert relative path to absolute path when relative path is provided.
     private Path getAbsolutePath(String cloudPath) {
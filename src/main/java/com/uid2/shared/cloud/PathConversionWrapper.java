@@ -62,6 +62,26 @@ public class PathConversionWrapper implements ICloudStorage {
             .collect(Collectors.toList());
     }
 
+    @Override
+    public List<String> list(String prefix, String startAfter) throws CloudStorageException {
+        // forwarded so the backend can start listing after startAfter instead of listing the whole prefix
+        String backendStartAfter = startAfter == null ? null : backwardConverter.apply(startAfter);
+        return backend.list(backwardConverter.apply(prefix), backendStartAfter).stream()
+            .map(f -> forwardConverter.apply(f))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<String> listAll(Collection<String> prefixes) throws CloudStorageException {
+        // forwarded so the backend can list the prefixes concurrently
+        Collection<String> convertedPrefixes = prefixes.stream()
+            .map(p -> backwardConverter.apply(p))
+            .collect(Collectors.toList());
+        return backend.listAll(convertedPrefixes).stream()
+            .map(f -> forwardConverter.apply(f))
+            .collect(Collectors.toList());
+    }
+
     @Override
     public URL preSignUrl(String cloudPath) throws CloudStorageException {
         // cloudPath is provided by local, apply backwardConverter
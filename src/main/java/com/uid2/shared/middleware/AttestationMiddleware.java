@@ -11,31 +11,40 @@ import io.vertx.ext.web.RoutingContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 
 public class AttestationMiddleware {
+    private static final int DEFAULT_TOKEN_CACHE_MAX_ENTRIES = 10000;
 
     private final IAttestationTokenService tokenService;
     private final JwtService jwtService;
     private final String jwtAudience;
     private final String jwtIssuer;
     private final boolean enforceJwt;
+    private final AttestationTokenCache tokenCache;
 
     public AttestationMiddleware(IAttestationTokenService tokenService, JwtService jwtService, String jwtAudience, String jwtIssuer, boolean enforceJwt) {
+        this(tokenService, jwtService, jwtAudience, jwtIssuer, enforceJwt, DEFAULT_TOKEN_CACHE_MAX_ENTRIES, Clock.systemUTC());
+    }
+
+    public AttestationMiddleware(IAttestationTokenService tokenService, JwtService jwtService, String jwtAudience, String jwtIssuer, boolean enforceJwt, int tokenCacheMaxEntries, Clock clock) {
         this.tokenService = tokenService;
         this.jwtService = jwtService;
         this.jwtAudience = jwtAudience;
         this.jwtIssuer = jwtIssuer;
         this.enforceJwt = enforceJwt;
+        this.tokenCache = new AttestationTokenCache(tokenCacheMaxEntries, clock);
     }
 
     //region RequestHandler
 
     public Handler<RoutingContext> handle(Handler<RoutingContext> handler, com.uid2.shared.auth.Role... roles) {
         final RoleBasedJwtClaimValidator validator = new RoleBasedJwtClaimValidator(Collections.unmodifiableSet(new HashSet<>(Arrays.asList(roles))));
-        final AttestationHandler wrapper = new AttestationHandler(handler, this.tokenService, this.jwtService, this.jwtAudience, this.jwtIssuer, this.enforceJwt, validator);
+        final AttestationHandler wrapper = new AttestationHandler(handler, this.tokenService, this.tokenCache, this.jwtService, this.jwtAudience, this.jwtIssuer, this.enforceJwt, validator);
         return wrapper::handle;
     }
 
@@ -43,15 +52,17 @@ public class AttestationMiddleware {
         private final static Logger LOGGER = LoggerFactory.getLogger(AttestationHandler.class);
         private final Handler<RoutingContext> next;
         private final IAttestationTokenService attestor;
+        private final AttestationTokenCache tokenCache;
         private final JwtService jwtService;
         private final String jwtAudience;
         private final String jwtIssuer;
         private final boolean enforceJwt;
         private final RoleBasedJwtClaimValidator roleBasedJwtClaimValidator;
 
-        AttestationHandler(Handler<RoutingContext> next, IAttestationTokenService attestor, JwtService jwtService, String jwtAudience, String jwtIssuer, boolean enforceJwt, RoleBasedJwtClaimValidator roleBasedJwtClaimValidator) {
+        AttestationHandler(Handler<RoutingContext> next, IAttestationTokenService attestor, AttestationTokenCache tokenCache, JwtService jwtService, String jwtAudience, String jwtIssuer, boolean enforceJwt, RoleBasedJwtClaimValidator roleBasedJwtClaimValidator) {
             this.next = next;
             this.attestor = attestor;
+            this.tokenCache = tokenCache;
             this.jwtService = jwtService;
             this.jwtAudience = jwtAudience;
             this.jwtIssuer = jwtIssuer;
@@ -74,7 +85,7 @@ public class AttestationMiddleware {
                     // (pre-)trusted operator requires no-attestation
                     success = true;
                 } else if (encryptedToken != null && userToken != null) {
-                    success = attestor.validateToken(userToken, encryptedToken);
+                    success = validateAttestationToken(userToken, encryptedToken);
                 }
 
                 if (success) {
@@ -106,6 +117,25 @@ public class AttestationMiddleware {
             }
         }
 
+        private boolean validateAttestationToken(String userToken, String encryptedToken) {
+            if (!attestor.reportsExpiry()) {
+                // without an expiry there is no telling how long the result holds, so it is not cached
+                return attestor.validateToken(userToken, encryptedToken);
+            }
+
+            if (tokenCache.isVerified(userToken, encryptedToken)) {
+                return true;
+            }
+
+            final Instant expiresAt = attestor.validateTokenAndGetExpiry(userToken, encryptedToken);
+            if (expiresAt == null) {
+                return false;
+            }
+
+            tokenCache.put(userToken, encryptedToken, expiresAt);
+            return true;
+        }
+
         private void onFailedAttestation(RoutingContext rc) {
             rc.fail(401);
         }
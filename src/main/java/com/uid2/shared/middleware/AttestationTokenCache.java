@@ -0,0 +1,112 @@
+package com.uid2.shared.middleware;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers which (user token, attestation token) pairs have already been verified, until the
+ * attestation token expires, so repeated requests from an operator skip decrypting the token.
+ */
+class AttestationTokenCache {
+    // tells the metrics of each cache apart
+    private static final AtomicInteger INSTANCE_COUNT = new AtomicInteger();
+
+    private final int maxEntries;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Long> expiresAtByToken = new ConcurrentHashMap<>();
+    private final Counter counterHits;
+    private final Counter counterMisses;
+    private final Counter counterEvictions;
+
+    AttestationTokenCache(int maxEntries, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+
+        final String instance = String.valueOf(INSTANCE_COUNT.incrementAndGet());
+        // the gauge only holds a weak reference to the map, so it doesn't keep the cache alive
+        Gauge.builder("uid2.attestation_token_cache.size", this.expiresAtByToken, Map::size)
+            .tag("instance", instance)
+            .description("gauge for how many verified attestation tokens are cached")
+            .register(Metrics.globalRegistry);
+
+        this.counterHits = Counter
+            .builder("uid2.attestation_token_cache.hits")
+            .tag("instance", instance)
+            .description("counter for how many attestation tokens are found in the verified token cache")
+            .register(Metrics.globalRegistry);
+
+        this.counterMisses = Counter
+            .builder("uid2.attestation_token_cache.misses")
+            .tag("instance", instance)
+            .description("counter for how many attestation tokens are not found in the verified token cache")
+            .register(Metrics.globalRegistry);
+
+        this.counterEvictions = Counter
+            .builder("uid2.attestation_token_cache.evictions")
+            .tag("instance", instance)
+            .description("counter for how many expired attestation tokens are evicted from the verified token cache")
+            .register(Metrics.globalRegistry);
+    }
+
+    boolean isVerified(String userToken, String attestationToken) {
+        final String key = toKey(userToken, attestationToken);
+        final Long expiresAt = this.expiresAtByToken.get(key);
+        if (expiresAt == null) {
+            this.counterMisses.increment();
+            return false;
+        }
+
+        if (expiresAt <= this.clock.instant().getEpochSecond()) {
+            if (this.expiresAtByToken.remove(key, expiresAt)) {
+                this.counterEvictions.increment();
+            }
+            this.counterMisses.increment();
+            return false;
+        }
+
+        this.counterHits.increment();
+        return true;
+    }
+
+    void put(String userToken, String attestationToken, Instant expiresAt) {
+        if (this.maxEntries <= 0 || !expiresAt.isAfter(this.clock.instant())) {
+            return;
+        }
+
+        if (this.expiresAtByToken.size() >= this.maxEntries) {
+            evictExpired();
+            if (this.expiresAtByToken.size() >= this.maxEntries) {
+                // still full of live tokens; those will keep being validated the slow way until space frees up
+                return;
+            }
+        }
+
+        this.expiresAtByToken.put(toKey(userToken, attestationToken), expiresAt.getEpochSecond());
+    }
+
+    int size() {
+        return this.expiresAtByToken.size();
+    }
+
+    private void evictExpired() {
+        final long now = this.clock.instant().getEpochSecond();
+        for (Map.Entry<String, Long> entry : this.expiresAtByToken.entrySet()) {
+            if (entry.getValue() <= now && this.expiresAtByToken.remove(entry.getKey(), entry.getValue())) {
+                this.counterEvictions.increment();
+            }
+        }
+    }
+
+    // the tokens are joined with ','; attestation tokens are base64 parts joined by '-' and never contain ',',
+    // so the last ',' in a key always separates the two
+    private static String toKey(String userToken, String attestationToken) {
+        return userToken + "," + attestationToken;
+    }
+}
@@ -1,16 +1,28 @@
 package com.uid2.shared.model;
 
+import java.util.function.LongFunction;
+
 public class SaltEntry {
     private final long id;
-    private final String hashedId;
     private final long lastUpdated;
     private final String salt;
+    // computed from id on first use when the entry is created with an encoder, as only few callers need it
+    private String hashedId;
+    private final LongFunction<String> hashedIdEncoder;
 
     public SaltEntry(long id, String hashedId, long lastUpdated, String salt) {
         this.id = id;
         this.lastUpdated = lastUpdated;
         this.hashedId = hashedId;
         this.salt = salt;
+        this.hashedIdEncoder = null;
+    }
+
+    public SaltEntry(long id, long lastUpdated, String salt, LongFunction<String> hashedIdEncoder) {
+        this.id = id;
+        this.lastUpdated = lastUpdated;
+        this.salt = salt;
+        this.hashedIdEncoder = hashedIdEncoder;
     }
 
     public long getId() {
@@ -18,6 +30,12 @@ public class SaltEntry {
     }
 
     public String getHashedId() {
+        String hashedId = this.hashedId;
+        if (hashedId == null && this.hashedIdEncoder != null) {
+            // a benign race, like String.hashCode: concurrent callers compute and store the same immutable value
+            hashedId = this.hashedIdEncoder.apply(this.id);
+            this.hashedId = hashedId;
+        }
         return hashedId;
     }
 
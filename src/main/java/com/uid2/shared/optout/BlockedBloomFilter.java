@@ -0,0 +1,136 @@
+package com.uid2.shared.optout;
+
+import java.util.Arrays;
+
+// A cache-line blocked bloom filter with k > 1 bits per entry.
+//
+// The bitfield is split into blocks of 512 bits (64 bytes, one cache line), and all k bits of an
+// entry are set within a single block, so a lookup touches exactly one cache line no matter what k is.
+//
+// Like BloomFilter, input is expected to be a uniformly random SHA-256 identity hash, so no hashing
+// is needed: the block index is taken from the lowest bits of the first 8 bytes, and each of the k
+// bit positions within the block is a different 9-bit slice of the remaining 24 bytes.
+//
+// The filter is sized from the expected number of entries and the target false positive rate (fpr).
+// Compared to BloomFilter.idealCapacity (~128 bits per entry for ~1%), 1% needs ~10 bits per entry here.
+public class BlockedBloomFilter implements IBloomFilter {
+    // 8 longs per block == 512 bits == 64 bytes
+    private static final int blockLongs = 8;
+    private static final int blockBits = blockLongs * Long.SIZE;
+
+    // bits needed to address a bit within a block
+    private static final int bitIndexBits = OptOutUtils.logTwo(blockBits);
+    private static final int bitIndexMask = blockBits - 1;
+
+    // 24 bytes of the hash are left after the block index, 192 / 9 == 21 slices
+    private static final int maxHashFunctions = 16;
+
+    // keep the backing long[] addressable with an int
+    private static final long maxBlocks = 1L << 27;
+
+    private final long[] bitfield;
+    private final long blockMask;
+    private final int hashFunctions;
+    private long size;
+
+    public BlockedBloomFilter(long expectedEntries, double fpr) {
+        assert expectedEntries > 0;
+        assert fpr > 0 && fpr < 1;
+
+        // optimal bits per entry for a standard bloom filter is -ln(fpr) / ln(2)^2
+        final double bitsPerEntry = -Math.log(fpr) / (Math.log(2) * Math.log(2));
+        final long proposedBlocks = Math.max(1, (long) Math.ceil(expectedEntries * bitsPerEntry / blockBits));
+        long blocks = Long.highestOneBit(proposedBlocks);
+        if (blocks < proposedBlocks) {
+            // round up, the extra space makes up for the slightly higher fpr of blocking
+            blocks <<= 1;
+        }
+        blocks = Math.min(blocks, maxBlocks);
+
+        this.bitfield = new long[(int) (blocks * blockLongs)];
+        this.blockMask = blocks - 1;
+        this.hashFunctions = (int) Math.max(1, Math.min(maxHashFunctions, Math.round(bitsPerEntry * Math.log(2))));
+        this.size = 0;
+    }
+
+    @Override
+    public long capacity() {
+        return (long) this.bitfield.length * Long.SIZE;
+    }
+
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    public int hashFunctions() {
+        return this.hashFunctions;
+    }
+
+    // memory used by the bitfield, in bytes
+    public long sizeInBytes() {
+        return (long) this.bitfield.length * Long.BYTES;
+    }
+
+    @Override
+    public void reset() {
+        this.size = 0;
+        Arrays.fill(this.bitfield, 0L);
+    }
+
+    @Override
+    public boolean add(byte[] bytes) {
+        return this.add(bytes, 0);
+    }
+
+    @Override
+    public boolean add(byte[] bytes, int offset) {
+        if (likelyContains(bytes, offset)) return false;
+
+        ++this.size;
+        final int blockStart = this.getBlockStart(bytes, offset);
+        long slices = 0;
+        int slicesLeft = 0;
+        int sliceWord = 0;
+        for (int i = 0; i < this.hashFunctions; ++i) {
+            if (slicesLeft == 0) {
+                slices = OptOutUtils.toLong(bytes, offset + Long.BYTES * ++sliceWord);
+                slicesLeft = Long.SIZE / bitIndexBits;
+            }
+            final int bitIndex = (int) (slices & bitIndexMask);
+            slices >>>= bitIndexBits;
+            --slicesLeft;
+            this.bitfield[blockStart + (bitIndex >>> 6)] |= 1L << bitIndex;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean likelyContains(byte[] bytes) {
+        return this.likelyContains(bytes, 0);
+    }
+
+    @Override
+    public boolean likelyContains(byte[] bytes, int offset) {
+        final int blockStart = this.getBlockStart(bytes, offset);
+        long slices = 0;
+        int slicesLeft = 0;
+        int sliceWord = 0;
+        for (int i = 0; i < this.hashFunctions; ++i) {
+            if (slicesLeft == 0) {
+                slices = OptOutUtils.toLong(bytes, offset + Long.BYTES * ++sliceWord);
+                slicesLeft = Long.SIZE / bitIndexBits;
+            }
+            final int bitIndex = (int) (slices & bitIndexMask);
+            slices >>>= bitIndexBits;
+            --slicesLeft;
+            if (0 == (this.bitfield[blockStart + (bitIndex >>> 6)] & (1L << bitIndex))) return false;
+        }
+        return true;
+    }
+
+    private int getBlockStart(byte[] bytes, int offset) {
+        assert offset >= 0 && offset + OptOutConst.Sha256Bytes <= bytes.length;
+        return (int) (OptOutUtils.toLong(bytes, offset) & this.blockMask) * blockLongs;
+    }
+}
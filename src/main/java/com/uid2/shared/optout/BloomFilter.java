@@ -16,10 +16,10 @@ import java.util.Arrays;
 // A level 2 index, to address the bit within the long
 //
 // Note: this is a simplified bloomfilter implementation with just 1 hash function.
-// Memory space usage can be reduced by ~6x by allowing k > 1 hash functions as a
-// potential future improvement.
+// BlockedBloomFilter uses k > 1 bits per entry and needs several times less memory
+// for the same false positive rate.
 //
-public class BloomFilter {
+public class BloomFilter implements IBloomFilter {
     // bits that can be stored in 2^31 bytes ~= 16 billion, should be more than enough
     public static final long MAX_CAPACITY = ((long) Integer.MAX_VALUE + 1) * 8;
 
@@ -66,11 +66,13 @@ public class BloomFilter {
     }
 
     // getter for capacity
+    @Override
     public long capacity() {
         return this.capacity;
     }
 
     // getter for size
+    @Override
     public long size() {
         return this.size;
     }
@@ -95,15 +97,18 @@ public class BloomFilter {
     }
 
     // zero out the backing store
+    @Override
     public void reset() {
         this.size = 0;
         Arrays.fill(this.bitfield, 0L);
     }
 
+    @Override
     public boolean add(byte[] bytes) {
         return this.add(bytes, 0);
     }
 
+    @Override
     public boolean add(byte[] bytes, int offset) {
         if (likelyContains(bytes, offset)) return false;
 
@@ -115,10 +120,12 @@ public class BloomFilter {
         return true;
     }
 
+    @Override
     public boolean likelyContains(byte[] bytes) {
         return this.likelyContains(bytes, 0);
     }
 
+    @Override
     public boolean likelyContains(byte[] bytes, int offset) {
         long bfIndex = this.getBfIndex(bytes, offset);
         int l1Index = (int) (bfIndex >> BloomFilter.l2IndexBits);
@@ -0,0 +1,21 @@
+package com.uid2.shared.optout;
+
+public interface IBloomFilter {
+    // number of bits available in the filter
+    long capacity();
+
+    // number of distinct entries added
+    long size();
+
+    // zero out the backing store
+    void reset();
+
+    boolean add(byte[] bytes);
+
+    // returns false if the entry is likely already contained
+    boolean add(byte[] bytes, int offset);
+
+    boolean likelyContains(byte[] bytes);
+
+    boolean likelyContains(byte[] bytes, int offset);
+}
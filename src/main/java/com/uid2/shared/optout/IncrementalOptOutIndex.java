@@ -0,0 +1,256 @@
+package com.uid2.shared.optout;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.DownloadCloudStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+// IncrementalOptOutIndex keeps an opt-out lookup index up to date from the set of cached partition
+// and delta files, without rebuilding it from scratch on every refresh. It can be registered directly
+// with OptOutCloudSync.registerNewCachedPathsHandler(index::update).
+//
+// The index is a stack of immutable sorted tiers plus a small mutable delta tier:
+// - each new partition file becomes a tier of its own (partition files are already sorted)
+// - new delta files are added to the delta tier, which is sorted into a tier once it is large enough
+// - when there are more than maxTiers immutable tiers, the smallest ones are merged in the background
+//
+// Every change publishes a new immutable Snapshot atomically, so readers never see a partially applied
+// update. Like a full rebuild, a lookup reports the max timestamp of the identity hash across all tiers.
+//
+// When a cached file is removed, only the tiers built from that file are rebuilt, from their remaining files.
+public class IncrementalOptOutIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalOptOutIndex.class);
+
+    // tiers are small enough that a modest prefix index keeps lookups to a few comparisons
+    private static final int maxTierIndexBits = 16;
+
+    private final DownloadCloudStorage fsLocal;
+    private final Executor compactionExecutor;
+    private final int deltaTierMaxEntries;
+    private final int maxTiers;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(Collections.emptyList()));
+
+    // guarded by this
+    private final List<Tier> tiers = new ArrayList<>();
+    private final OptOutHeap deltaHeap = new OptOutHeap(1024);
+    private final Set<String> deltaHeapFiles = new HashSet<>();
+    private Tier deltaTier = null;
+    private boolean compacting = false;
+
+    public IncrementalOptOutIndex(DownloadCloudStorage fsLocal, Executor compactionExecutor, int deltaTierMaxEntries, int maxTiers) {
+        assert deltaTierMaxEntries > 0 && maxTiers > 1;
+        this.fsLocal = fsLocal;
+        this.compactionExecutor = compactionExecutor;
+        this.deltaTierMaxEntries = deltaTierMaxEntries;
+        this.maxTiers = maxTiers;
+    }
+
+    public Snapshot snapshot() {
+        return this.snapshot.get();
+    }
+
+    // applies the difference between the files already in the index and cachedPaths
+    public void update(Collection<String> cachedPaths) {
+        final Set<String> current = new HashSet<>(cachedPaths);
+        synchronized (this) {
+            final Set<String> loaded = this.snapshot.get().files();
+            final Set<String> removed = new HashSet<>(loaded);
+            removed.removeAll(current);
+            final List<String> added = current.stream()
+                .filter(f -> !loaded.contains(f))
+                .sorted()
+                .collect(Collectors.toList());
+            if (removed.isEmpty() && added.isEmpty()) return;
+
+            // files of tiers that lost a file, which need to be loaded again
+            final List<String> reload = new ArrayList<>();
+            if (!removed.isEmpty()) {
+                for (Iterator<Tier> it = this.tiers.iterator(); it.hasNext(); ) {
+                    final Tier tier = it.next();
+                    if (!Collections.disjoint(tier.files, removed)) {
+                        it.remove();
+                        tier.files.stream().filter(f -> !removed.contains(f)).forEach(reload::add);
+                    }
+                }
+                if (!Collections.disjoint(this.deltaHeapFiles, removed)) {
+                    this.deltaHeapFiles.stream().filter(f -> !removed.contains(f)).forEach(reload::add);
+                    this.deltaHeapFiles.clear();
+                    this.deltaHeap.reset();
+                    this.deltaTier = null;
+                }
+                LOGGER.info("removed " + removed.size() + " files from optout index, reloading " + reload.size() + " files");
+            }
+
+            reload.addAll(added);
+            for (String file : reload) {
+                this.load(file);
+            }
+
+            this.publish();
+            this.compactIfNeeded();
+        }
+    }
+
+    private void load(String file) {
+        final byte[] data;
+        try (InputStream input = this.fsLocal.download(file)) {
+            data = input.readAllBytes();
+        } catch (CloudStorageException | IOException e) {
+            // keep serving the previous snapshot, the file is retried on the next update
+            LOGGER.error("unable to load optout file " + file + ": " + e.getMessage(), e);
+            return;
+        }
+
+        if (data.length == 0 || data.length % OptOutConst.EntrySize != 0) {
+            LOGGER.error("skipping optout file " + file + " with invalid size " + data.length);
+            return;
+        }
+
+        if (OptOutUtils.isDeltaFile(file)) {
+            this.deltaHeap.add(new OptOutCollection(data));
+            this.deltaHeapFiles.add(file);
+            this.deltaTier = null;
+            if (this.deltaHeap.size() >= this.deltaTierMaxEntries) {
+                this.freezeDeltaTier();
+            }
+        } else {
+            // partition (and synthetic) files are sorted when produced
+            this.tiers.add(new Tier(newPartition(data), Collections.singleton(file)));
+        }
+    }
+
+    private void freezeDeltaTier() {
+        this.tiers.add(this.sortDeltaHeap());
+        this.deltaHeap.reset();
+        this.deltaHeapFiles.clear();
+        this.deltaTier = null;
+    }
+
+    private Tier sortDeltaHeap() {
+        final OptOutPartition sorted = this.deltaHeap.toPartition(true,
+            OptOutPartition.idealIndexBits(this.deltaHeap.size(), maxTierIndexBits));
+        return new Tier(sorted, new HashSet<>(this.deltaHeapFiles));
+    }
+
+    private void publish() {
+        final List<Tier> published = new ArrayList<>(this.tiers);
+        if (!this.deltaHeap.isEmpty()) {
+            if (this.deltaTier == null) {
+                this.deltaTier = this.sortDeltaHeap();
+            }
+            published.add(this.deltaTier);
+        }
+        this.snapshot.set(new Snapshot(published));
+    }
+
+    private void compactIfNeeded() {
+        if (this.compacting || this.tiers.size() <= this.maxTiers) return;
+
+        // size tiered: merge the smallest tiers, so that large tiers are not rewritten on every compaction
+        final List<Tier> toMerge = this.tiers.stream()
+            .sorted(Comparator.comparingInt(t -> t.partition.size()))
+            .limit(this.tiers.size() - this.maxTiers + 1)
+            .collect(Collectors.toList());
+
+        this.compacting = true;
+        try {
+            this.compactionExecutor.execute(() -> this.compact(toMerge));
+        } catch (RuntimeException e) {
+            this.compacting = false;
+            LOGGER.error("unable to schedule optout index compaction: " + e.getMessage(), e);
+        }
+    }
+
+    private void compact(List<Tier> toMerge) {
+        Tier merged = null;
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final long entries = OptOutMerger.merge(toMerge.stream().map(t -> t.partition).collect(Collectors.toList()), out);
+            final Set<String> files = new HashSet<>();
+            toMerge.forEach(t -> files.addAll(t.files));
+            merged = new Tier(newPartition(out.toByteArray()), files);
+            LOGGER.info("compacted " + toMerge.size() + " optout index tiers into " + entries + " entries");
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("optout index compaction failed: " + e.getMessage(), e);
+        }
+
+        synchronized (this) {
+            this.compacting = false;
+            // tiers may have been dropped by an update while merging, in which case the result is stale
+            if (merged != null && this.tiers.containsAll(toMerge)) {
+                this.tiers.removeAll(toMerge);
+                this.tiers.add(merged);
+                this.publish();
+            }
+            this.compactIfNeeded();
+        }
+    }
+
+    private static OptOutPartition newPartition(byte[] data) {
+        final int entries = data.length / OptOutConst.EntrySize;
+        return new OptOutPartition(data, OptOutPartition.idealIndexBits(entries, maxTierIndexBits));
+    }
+
+    private static class Tier {
+        private final OptOutPartition partition;
+        private final Set<String> files;
+
+        Tier(OptOutPartition partition, Set<String> files) {
+            this.partition = partition;
+            this.files = files;
+        }
+    }
+
+    // an immutable view of the index at one point in time
+    public static class Snapshot {
+        private final List<OptOutPartition> partitions;
+        private final Set<String> files;
+        private final long size;
+
+        private Snapshot(List<Tier> tiers) {
+            this.partitions = tiers.stream().map(t -> t.partition).collect(Collectors.toUnmodifiableList());
+            final Set<String> files = new HashSet<>();
+            tiers.forEach(t -> files.addAll(t.files));
+            this.files = Collections.unmodifiableSet(files);
+            this.size = this.partitions.stream().mapToLong(OptOutPartition::size).sum();
+        }
+
+        public boolean contains(byte[] identityHash) {
+            for (OptOutPartition partition : this.partitions) {
+                if (partition.contains(identityHash)) return true;
+            }
+            return false;
+        }
+
+        // max timestamp across tiers, -1 if the identity hash is not opted out
+        public long getOptOutTimestamp(byte[] identityHash) {
+            long timestamp = -1;
+            for (OptOutPartition partition : this.partitions) {
+                timestamp = Math.max(timestamp, partition.getOptOutTimestamp(identityHash));
+            }
+            return timestamp;
+        }
+
+        public int tierCount() {
+            return this.partitions.size();
+        }
+
+        // total entries across tiers, an entry in multiple tiers is counted once per tier
+        public long size() {
+            return this.size;
+        }
+
+        public Set<String> files() {
+            return this.files;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.uid2.shared.optout;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// MappedOptOutPartition serves lookups directly from a sorted partition file on disk, instead of
+// reading the whole file into an on-heap byte[] as OptOutPartition does. The file is mapped read-only,
+// so loading is near instant, the entries put no pressure on the GC, and partitions can exceed 2GB.
+//
+// A single MappedByteBuffer can address at most 2GB, so the file is mapped as a list of chunks,
+// each holding a whole number of entries.
+public class MappedOptOutPartition {
+    private static final long timestampMask = 0xFFFFFFFFFFFFFFL;
+    private static final int timestampOffset = OptOutConst.Sha256Bytes << 1;
+
+    // largest number of entries that fit in one mapped buffer
+    static final int MAX_ENTRIES_PER_CHUNK = Integer.MAX_VALUE / OptOutConst.EntrySize;
+
+    private final MappedByteBuffer[] chunks;
+    private final int entriesPerChunk;
+    private final long size;
+
+    private MappedOptOutPartition(MappedByteBuffer[] chunks, int entriesPerChunk, long size) {
+        this.chunks = chunks;
+        this.entriesPerChunk = entriesPerChunk;
+        this.size = size;
+    }
+
+    public static MappedOptOutPartition open(Path path) throws IOException {
+        return open(path, MAX_ENTRIES_PER_CHUNK);
+    }
+
+    static MappedOptOutPartition open(Path path, int entriesPerChunk) throws IOException {
+        assert entriesPerChunk > 0 && entriesPerChunk <= MAX_ENTRIES_PER_CHUNK;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize == 0 || fileSize % OptOutConst.EntrySize != 0) {
+                throw new IOException("invalid optout partition file size " + fileSize + ": " + path);
+            }
+
+            final long entries = fileSize / OptOutConst.EntrySize;
+            final int chunkCount = (int) ((entries + entriesPerChunk - 1) / entriesPerChunk);
+            final MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            final long chunkBytes = (long) entriesPerChunk * OptOutConst.EntrySize;
+            for (int i = 0; i < chunkCount; ++i) {
+                final long position = i * chunkBytes;
+                // the mapping stays valid after the channel is closed
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkBytes, fileSize - position));
+            }
+            return new MappedOptOutPartition(chunks, entriesPerChunk, entries);
+        }
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public boolean contains(byte[] identityHash) {
+        return -1 != this.binarySearch(identityHash);
+    }
+
+    public long getOptOutTimestamp(byte[] identityHash) {
+        long entryIndex = this.binarySearch(identityHash);
+        if (-1 == entryIndex) {
+            // -1 to indicate optout entry not exists
+            return -1;
+        }
+
+        final MappedByteBuffer chunk = this.chunks[(int) (entryIndex / this.entriesPerChunk)];
+        final int offset = (int) (entryIndex % this.entriesPerChunk) * OptOutConst.EntrySize;
+        // mapped buffers are big-endian, timestamps are stored little-endian
+        return Long.reverseBytes(chunk.getLong(offset + timestampOffset)) & timestampMask;
+    }
+
+    // same search as OptOutPartition, so both resolve lookups to the same entry
+    private long binarySearch(byte[] identityHash) {
+        // identityHash must be of expected size that contains the SHA256 hash
+        assert identityHash.length == OptOutConst.Sha256Bytes;
+
+        long left = 0;
+        long right = this.size;
+        while (right > left) {
+            long mid = left + (right - 1 - left) / 2;
+            int cmp = this.compareEntryToIdentityHash(mid, identityHash);
+
+            if (cmp == 0)
+                return mid;
+
+            if (cmp > 0)
+                right = mid;
+            else
+                left = mid + 1;
+        }
+
+        return -1;
+    }
+
+    private int compareEntryToIdentityHash(long entryIndex, byte[] identityHash) {
+        final MappedByteBuffer chunk = this.chunks[(int) (entryIndex / this.entriesPerChunk)];
+        final int offset = (int) (entryIndex % this.entriesPerChunk) * OptOutConst.EntrySize;
+        for (int i = 0; i < OptOutConst.Sha256Bytes; i += Long.BYTES) {
+            // absolute gets do not touch the buffer position, so concurrent lookups are safe
+            long a = chunk.getLong(offset + i);
+            long b = OptOutUtils.toLongBE(identityHash, i);
+            if (a != b) return Long.compareUnsigned(a, b);
+        }
+        return 0;
+    }
+}
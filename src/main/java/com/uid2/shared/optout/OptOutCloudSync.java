@@ -36,6 +36,7 @@ public class OptOutCloudSync implements ICloudSync {
     private final String cloudSyntheticFolder;
 
     private final int deltaBacktrackInDays;
+    private final int fullListingIntervalInSeconds;
     private final int replicaId;
     private final int maxReplicas;
     private final FileUtils fileUtils;
@@ -48,6 +49,11 @@ public class OptOutCloudSync implements ICloudSync {
     private Consumer<Collection<String>> handlerIndexUpdate = null;
     private AtomicReference<List<Consumer<Collection<String>>>> handlersNewCloudPaths = new AtomicReference<>(new ArrayList<>());
 
+    // delta listing remembered between refreshes when not in full sync mode, see cloudListRelevantFiles
+    private final TreeSet<String> cachedDeltaListing = new TreeSet<>();
+    private Instant lastFullListing = null;
+    private Instant lastListing = null;
+
     public OptOutCloudSync(JsonObject jsonConfig, boolean fullSync) {
         this.fullSync = fullSync;
         this.cloudFolder = CloudUtils.normalizDirPath(jsonConfig.getString(Const.Config.OptOutS3FolderProp));
@@ -63,6 +69,9 @@ public class OptOutCloudSync implements ICloudSync {
         this.deltaBacktrackInDays = jsonConfig.getInteger(Const.Config.OptOutDeltaBacktrackInDaysProp);
         assert this.deltaBacktrackInDays > 0;
 
+        // 0 lists the whole delta window on every refresh
+        this.fullListingIntervalInSeconds = jsonConfig.getInteger(Const.Config.OptOutFullListingIntervalProp, 3600);
+
         this.replicaId = OptOutUtils.getReplicaId(jsonConfig);
         this.maxReplicas = jsonConfig.getInteger(Const.Config.OptOutProducerMaxReplicasProp, 0);
         assert this.maxReplicas > 0;
@@ -128,7 +137,7 @@ public class OptOutCloudSync implements ICloudSync {
         localListFiles(fsLocal, this.partitionConsumerDir, OptOutUtils.prefixPartitionFile, cachedPathList);
 
         // list cloud paths
-        List<String> cloudPathList = this.cloudListRelevantFiles(fsCloud);
+        List<String> cloudPathList = this.cloudListRelevantFiles(fsCloud, now);
 
         // saving a copy of refreshed files for both remote and local
         Set<String> cloudPaths = new HashSet<>(cloudPathList);
@@ -300,7 +309,10 @@ public class OptOutCloudSync implements ICloudSync {
         List<String> found = fsLocal.list(dirToScan);
         for (String f : found) {
             Path p = Paths.get(f);
-            if (!p.getFileName().toString().startsWith(filePrefix)) {
+            if (CloudUtils.isTempFile(p)) {
+                // a download in progress, the file appears under its own name once complete
+                continue;
+            } else if (!p.getFileName().toString().startsWith(filePrefix)) {
                 LOGGER.warn("Not under " + filePrefix + ", unknown file " + f);
             } else if (OptOutUtils.getFileTimestamp(f) == null) {
                 LOGGER.warn("Unrecognized timestamp, unknown file " + f);
@@ -310,10 +322,10 @@ public class OptOutCloudSync implements ICloudSync {
         }
     }
 
-    private List<String> cloudListRelevantFiles(ICloudStorage cloudStorage) throws CloudStorageException {
+    private List<String> cloudListRelevantFiles(ICloudStorage cloudStorage, Instant now) throws CloudStorageException {
         if (fullSync) {
-            List<String> fileList = cloudStorage.list(this.cloudPartitionFolder);
-            fileList.addAll(cloudStorage.list(this.cloudDeltaRootFolder));
+            // partition and delta folders are independent, allow the storage to list them concurrently
+            List<String> fileList = cloudStorage.listAll(Arrays.asList(this.cloudPartitionFolder, this.cloudDeltaRootFolder));
             if (syntheticLogsEnabled) fileList.addAll(listSyntheticLogs(cloudStorage));
             return fileList;
         }
@@ -321,20 +333,32 @@ public class OptOutCloudSync implements ICloudSync {
         // list all partitions
         List<String> cloudFiles = cloudStorage.list(this.cloudPartitionFolder);
         Instant tsLast = OptOutUtils.lastPartitionTimestamp(cloudFiles);
-        if (tsLast == Instant.EPOCH) {
-            // if there are no partition yet, list all delta files under delta root
-            cloudFiles.addAll(cloudStorage.list(this.cloudDeltaRootFolder));
+
+        // list all deltas generated after (the date last partition file is created - N days),
+        // or all delta files under delta root if there are no partition yet
+        // day folders sort by date, so a single listing starting after the first day folder covers the window
+        String deltaWindowStart = tsLast == Instant.EPOCH
+            ? null
+            : this.getCloudDeltaFolder(tsLast.minus(this.deltaBacktrackInDays, ChronoUnit.DAYS));
+
+        if (this.lastFullListing == null || !now.isBefore(this.lastFullListing.plusSeconds(this.fullListingIntervalInSeconds))) {
+            // re-list the whole window on a slower schedule, which also picks up deltas deleted from the cloud
+            this.cachedDeltaListing.clear();
+            this.cachedDeltaListing.addAll(cloudStorage.list(this.cloudDeltaRootFolder, deltaWindowStart));
+            this.lastFullListing = now;
         } else {
-            Instant t = tsLast.minus(this.deltaBacktrackInDays, ChronoUnit.DAYS);
-            Instant now = Instant.now();
-
-            // list all deltas generated after before (the date last partition file is created - N days)
-            while (t.isBefore(now)) {
-                String deltaPrefixToList = this.getCloudDeltaFolder(t);
-                cloudFiles.addAll(cloudStorage.list(deltaPrefixToList));
-                t = t.plus(1, ChronoUnit.DAYS);
+            // otherwise only list day folders from the day before the last listing, which may have received deltas since
+            // (a delta rotated just before midnight can be uploaded after it, and delta file names start with the
+            // replica id, so the newest key seen is not a safe place to start after)
+            Instant listFrom = this.lastListing.minus(1, ChronoUnit.DAYS);
+            this.cachedDeltaListing.addAll(cloudStorage.list(this.cloudDeltaRootFolder, this.getCloudDeltaFolder(listFrom)));
+            if (deltaWindowStart != null) {
+                // a new partition moves the window forward
+                this.cachedDeltaListing.headSet(deltaWindowStart).clear();
             }
         }
+        this.lastListing = now;
+        cloudFiles.addAll(this.cachedDeltaListing);
 
         if (this.syntheticLogsEnabled) {
             cloudFiles.addAll(this.listSyntheticLogs(cloudStorage));
@@ -352,5 +376,7 @@ public class OptOutCloudSync implements ICloudSync {
     private void mkdirsBlocking() {
         Utils.ensureDirectoryExists(this.deltaConsumerDir);
         Utils.ensureDirectoryExists(this.partitionConsumerDir);
+        CloudUtils.deleteTempFiles(Paths.get(this.deltaConsumerDir));
+        CloudUtils.deleteTempFiles(Paths.get(this.partitionConsumerDir));
     }
 }
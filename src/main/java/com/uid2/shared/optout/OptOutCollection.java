@@ -42,16 +42,20 @@ public class OptOutCollection {
         return OptOutEntry.parse(store, bufPos);
     }
 
+    // allocates a new OptOutEntry per entry, prefer forEachView when scanning large collections
     public void forEach(Consumer<OptOutEntry> func) {
-        for (int i = 0; i < this.size(); ++i) {
-            func.accept(OptOutEntry.parse(this.store, i * OptOutConst.EntrySize));
-        }
+        this.forEachView(view -> func.accept(view.toEntry()));
     }
 
-    public void set(BloomFilter bf) {
+    // calls func with the same view moved over each entry in turn, see OptOutEntryView
+    public void forEachView(Consumer<OptOutEntryView> func) {
+        final OptOutEntryView view = new OptOutEntryView();
         for (int i = 0; i < this.size(); ++i) {
-            int bufPos = i * OptOutConst.EntrySize;
-            bf.add(this.store, bufPos);
+            func.accept(view.moveTo(this.store, i));
         }
     }
+
+    public void set(IBloomFilter bf) {
+        this.forEachView(view -> bf.add(view.store(), view.offset()));
+    }
 }
@@ -24,9 +24,14 @@ public final class OptOutEntry {
     public final byte[] advertisingId;
     public final long timestamp;
 
+    // the timestamp is read and written as the lower 7 bytes of a little endian long,
+    // whose highest byte is the metadata
     private static final long timestampMask = 0xFFFFFFFFFFFFFFl;
-    private static final byte adsIdTypeMask = 0x3F;
-    private static final int adsIdVersionShift = 6;
+    // package-private ones are also used by OptOutEntryView
+    static final int timestampOffset = OptOutConst.Sha256Bytes << 1;
+    static final int metadataShift = 56;
+    static final byte adsIdTypeMask = 0x3F;
+    static final int adsIdVersionShift = 6;
 
     public OptOutEntry(byte[] identityHash, byte[] advertisingId, long ts) {
         assert identityHash.length == OptOutConst.Sha256Bytes;
@@ -52,7 +57,7 @@ public final class OptOutEntry {
                 : parseAdsIdV3(buffer, bufferIndex, identityType);
         bufferIndex += OptOutConst.Sha256Bytes;
 
-        final long ts = ByteBuffer.wrap(buffer, bufferIndex, Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong() & timestampMask;
+        final long ts = OptOutUtils.toLong(buffer, bufferIndex) & timestampMask;
 
         return new OptOutEntry(idHash, adsId, ts);
     }
@@ -66,15 +71,15 @@ public final class OptOutEntry {
 
     public static long parseTimestamp(byte[] buffer, int bufferIndexForEntry) {
         assert bufferIndexForEntry + OptOutConst.EntrySize <= buffer.length;
-        return ByteBuffer.wrap(buffer, bufferIndexForEntry + (OptOutConst.Sha256Bytes << 1), Long.BYTES)
-                .order(ByteOrder.LITTLE_ENDIAN).getLong() & timestampMask;
+        return OptOutUtils.toLong(buffer, bufferIndexForEntry + timestampOffset) & timestampMask;
     }
 
     public static void setTimestamp(byte[] buffer, int bufferIndexForEntry, long timestamp) {
         assert bufferIndexForEntry + OptOutConst.EntrySize <= buffer.length;
-        final byte metadata = buffer[bufferIndexForEntry + OptOutConst.EntrySize - 1];
-        System.arraycopy(OptOutUtils.toByteArray(timestamp), 0, buffer, bufferIndexForEntry + (OptOutConst.Sha256Bytes << 1), Long.BYTES);
-        buffer[bufferIndexForEntry + OptOutConst.EntrySize - 1] = metadata;
+        final int pos = bufferIndexForEntry + timestampOffset;
+        // keep the metadata byte, replace the timestamp bytes
+        final long metadata = OptOutUtils.toLong(buffer, pos) & ~timestampMask;
+        OptOutUtils.putLong(buffer, pos, metadata | (timestamp & timestampMask));
     }
 
     public static boolean isSpecialHash(byte[] hashBytes) {
@@ -146,11 +151,8 @@ public final class OptOutEntry {
         System.arraycopy(this.advertisingId, metadata == 0 ? 0 : 1, bytes, offset, OptOutConst.Sha256Bytes);
         offset += OptOutConst.Sha256Bytes;
 
-        // copy timestamp
-        System.arraycopy(OptOutUtils.toByteArray(this.timestamp), 0, bytes, offset, Long.BYTES);
-
-        // set metadata
-        bytes[offset + Long.BYTES - 1] = metadata;
+        // copy timestamp and metadata
+        OptOutUtils.putLong(bytes, offset, timestampAndMetadata(this.timestamp, metadata));
     }
 
     public static void writeTo(ByteBuffer buffer, byte[] identityHash, byte[] advertisingId, long timestamp) {
@@ -158,12 +160,16 @@ public final class OptOutEntry {
         assert advertisingId.length == OptOutConst.Sha256Bytes || advertisingId.length == OptOutConst.Sha256Bytes + 1;
 
         final byte metadata = calcMetadata(advertisingId);
-        final byte[] timestampBytes = OptOutUtils.toByteArray(timestamp);
-        timestampBytes[timestampBytes.length - 1] = metadata;
+        final long timestampAndMetadata = timestampAndMetadata(timestamp, metadata);
 
         buffer.put(identityHash);
         buffer.put(advertisingId, metadata == 0 ? 0 : 1, OptOutConst.Sha256Bytes);
-        buffer.put(timestampBytes);
+        // entries are little endian regardless of the buffer's byte order
+        buffer.putLong(buffer.order() == ByteOrder.LITTLE_ENDIAN ? timestampAndMetadata : Long.reverseBytes(timestampAndMetadata));
+    }
+
+    private static long timestampAndMetadata(long timestamp, byte metadata) {
+        return (timestamp & timestampMask) | ((long) metadata << metadataShift);
     }
 
     // this method is for test
@@ -0,0 +1,94 @@
+package com.uid2.shared.optout;
+
+import java.util.Arrays;
+
+// OptOutEntryView is a reusable, allocation-free view of a single entry within a store, see OptOutEntry
+// for the entry format. Fields are read straight from the backing bytes; only toEntry() and the copy
+// methods that return arrays allocate.
+//
+// A view is moved over a store with moveTo() and is only valid until it is moved again, so do not
+// keep a reference to it in the consumer passed to OptOutCollection.forEachView.
+public final class OptOutEntryView {
+    private static final int advertisingIdOffset = OptOutConst.Sha256Bytes;
+    // the metadata is the highest byte of the little endian timestamp word
+    private static final int metadataOffset = OptOutEntry.timestampOffset + OptOutEntry.metadataShift / Byte.SIZE;
+
+    private byte[] store;
+    private int offset;
+
+    public OptOutEntryView() {
+    }
+
+    public OptOutEntryView(byte[] store, int entryIndex) {
+        this.moveTo(store, entryIndex);
+    }
+
+    public OptOutEntryView moveTo(byte[] store, int entryIndex) {
+        assert (entryIndex + 1) * OptOutConst.EntrySize <= store.length;
+        this.store = store;
+        this.offset = entryIndex * OptOutConst.EntrySize;
+        return this;
+    }
+
+    public OptOutEntryView moveTo(int entryIndex) {
+        return this.moveTo(this.store, entryIndex);
+    }
+
+    public byte[] store() {
+        return this.store;
+    }
+
+    // byte offset of the entry (and its identity hash) within store()
+    public int offset() {
+        return this.offset;
+    }
+
+    public long timestamp() {
+        return OptOutEntry.parseTimestamp(this.store, this.offset);
+    }
+
+    public byte metadata() {
+        return this.store[this.offset + metadataOffset];
+    }
+
+    public byte identityType() {
+        return (byte) (this.metadata() & OptOutEntry.adsIdTypeMask);
+    }
+
+    public byte recordVersion() {
+        return (byte) ((this.metadata() & 0xFF) >>> OptOutEntry.adsIdVersionShift);
+    }
+
+    public int compareIdentityHash(byte[] identityHash) {
+        return OptOutUtils.compareSha256(this.store, this.offset, identityHash, 0);
+    }
+
+    public int compareIdentityHash(OptOutEntryView other) {
+        return OptOutUtils.compareSha256(this.store, this.offset, other.store, other.offset);
+    }
+
+    public boolean identityHashEquals(byte[] identityHash) {
+        return 0 == this.compareIdentityHash(identityHash);
+    }
+
+    public void copyIdentityHashTo(byte[] dst, int dstOffset) {
+        System.arraycopy(this.store, this.offset, dst, dstOffset, OptOutConst.Sha256Bytes);
+    }
+
+    // copies the raw 32 byte advertising id, without the v3 identity type prefix
+    public void copyRawAdvertisingIdTo(byte[] dst, int dstOffset) {
+        System.arraycopy(this.store, this.offset + advertisingIdOffset, dst, dstOffset, OptOutConst.Sha256Bytes);
+    }
+
+    public void copyEntryTo(byte[] dst, int dstOffset) {
+        System.arraycopy(this.store, this.offset, dst, dstOffset, OptOutConst.EntrySize);
+    }
+
+    public byte[] identityHash() {
+        return Arrays.copyOfRange(this.store, this.offset, this.offset + OptOutConst.Sha256Bytes);
+    }
+
+    public OptOutEntry toEntry() {
+        return OptOutEntry.parse(this.store, this.offset);
+    }
+}
@@ -3,12 +3,21 @@ package com.uid2.shared.optout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 // append only heap
 public class OptOutHeap extends OptOutCollection {
     private static final Logger LOGGER = LoggerFactory.getLogger(OptOutHeap.class);
 
+    // ranges smaller than this are not worth sorting on a separate thread
+    private static final int MIN_ENTRIES_PER_SORT_TASK = 1 << 16;
+
     private byte[] tempEntry = null;
     private byte[] store = null;
     private int size = 0;
@@ -66,11 +75,31 @@ public class OptOutHeap extends OptOutCollection {
     }
 
     public OptOutPartition toPartition(boolean mergeDups) {
-        // make a copy of the current heap
-        OptOutHeap copy = new OptOutHeap(this);
+        return toPartition(mergeDups, 0);
+    }
+
+    // indexBits > 0 builds a prefix index over the partition, see OptOutPartition
+    public OptOutPartition toPartition(boolean mergeDups, int indexBits) {
+        return toPartition(mergeDups, indexBits, 1);
+    }
+
+    // parallelism > 1 splits the entries into up to that many ranges, sorted concurrently on the common fork-join
+    // pool and merged (along with any duplicates) in a final pass; the result is byte for byte the same as the
+    // single threaded sort
+    public OptOutPartition toPartition(boolean mergeDups, int indexBits, int parallelism) {
+        final int tasks = Math.min(parallelism, this.size / MIN_ENTRIES_PER_SORT_TASK);
+        final byte[] data = tasks > 1 ? this.sortParallel(mergeDups, tasks) : this.sortSequential(mergeDups);
+
+        // pass the sorted store to a new snapshot object
+        OptOutPartition snapshot = new OptOutPartition(data, indexBits);
+        return snapshot;
+    }
 
-        // inline sort entries based on identity hash, on the copy
-        int entries = copy.sortInline();
+    private byte[] sortSequential(boolean mergeDups) {
+        // sort entries based on identity hash into a new store, leaving the heap untouched
+        byte[] sorted = new byte[this.size * OptOutConst.EntrySize];
+        RadixEntrySorter.sort(this.store, 0, this.size, sorted);
+        int entries = this.size;
 
         if (entries > 1 && mergeDups) {
             // if there are duplicate entries (entries with the same identity hash)
@@ -78,15 +107,17 @@ public class OptOutHeap extends OptOutCollection {
             // mergeDups == false: keep all duplicate entries while sorting
             int j = 0;
             for (int i = 1; i < entries; ++i) {
-                if (0 == copy.compareEntriesInHeap(i, j)) {
+                int pi = i * OptOutConst.EntrySize;
+                int pj = j * OptOutConst.EntrySize;
+                if (0 == OptOutUtils.compareSha256(sorted, pi, sorted, pj)) {
                     // if identity hash matches, set timestamp to the max of two dupicates
-                    long maxTs = Math.max(copy.getEntryTimestamp(i), copy.getEntryTimestamp(j));
-                    copy.setEntryTimestamp(j, maxTs);
+                    long maxTs = Math.max(OptOutEntry.parseTimestamp(sorted, pi), OptOutEntry.parseTimestamp(sorted, pj));
+                    OptOutEntry.setTimestamp(sorted, pj, maxTs);
                 } else {
                     ++j;
                     if (j < i) {
                         // if there are gaps, copy item[i] at location item[j+1]
-                        copy.copyEntriesInHeap(i, j);
+                        System.arraycopy(sorted, pi, sorted, j * OptOutConst.EntrySize, OptOutConst.EntrySize);
                     }
                 }
             }
@@ -95,10 +126,102 @@ public class OptOutHeap extends OptOutCollection {
             entries = j + 1;
         }
 
-        // pass the sorted store to a new snapshot object
-        byte[] data = Arrays.copyOfRange(copy.store, 0, entries * OptOutConst.EntrySize);
-        OptOutPartition snapshot = new OptOutPartition(data);
-        return snapshot;
+        return entries == this.size ? sorted : Arrays.copyOf(sorted, entries * OptOutConst.EntrySize);
+    }
+
+    private byte[] sortParallel(boolean mergeDups, int tasks) {
+        final byte[] sorted = new byte[this.size * OptOutConst.EntrySize];
+
+        // split entries into contiguous ranges, each sorted into the new store by its own task
+        final int[] bounds = new int[tasks + 1];
+        for (int i = 0; i <= tasks; ++i) {
+            bounds[i] = (int) ((long) this.size * i / tasks);
+        }
+
+        final List<Callable<Void>> sorts = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; ++i) {
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            sorts.add(() -> {
+                RadixEntrySorter.sort(this.store, from, to, sorted);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> sort : ForkJoinPool.commonPool().invokeAll(sorts)) {
+                sort.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while sorting optout entries", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("failed to sort optout entries", e.getCause());
+        }
+
+        return mergeSortedRanges(sorted, bounds, mergeDups);
+    }
+
+    // merges sorted ranges [bounds[i], bounds[i+1]) of src, using the same dedup rule as sortSequential
+    private static byte[] mergeSortedRanges(byte[] src, int[] bounds, boolean mergeDups) {
+        final int ranges = bounds.length - 1;
+        final int[] heads = Arrays.copyOf(bounds, ranges);
+        final byte[] dst = new byte[bounds[ranges] * OptOutConst.EntrySize];
+        int entries = 0;
+
+        while (true) {
+            // the number of ranges is bounded by parallelism, so a linear scan for the min is cheap
+            int min = -1;
+            for (int r = 0; r < ranges; ++r) {
+                if (heads[r] < bounds[r + 1] && (min == -1
+                    || OptOutUtils.compareEntries(src, heads[r] * OptOutConst.EntrySize, src, heads[min] * OptOutConst.EntrySize) < 0)) {
+                    min = r;
+                }
+            }
+            if (min == -1) break;
+
+            final int srcPos = heads[min]++ * OptOutConst.EntrySize;
+            final int lastPos = (entries - 1) * OptOutConst.EntrySize;
+            if (mergeDups && entries > 0 && 0 == OptOutUtils.compareSha256(dst, lastPos, src, srcPos)) {
+                long maxTs = Math.max(OptOutEntry.parseTimestamp(dst, lastPos), OptOutEntry.parseTimestamp(src, srcPos));
+                OptOutEntry.setTimestamp(dst, lastPos, maxTs);
+            } else {
+                System.arraycopy(src, srcPos, dst, entries++ * OptOutConst.EntrySize, OptOutConst.EntrySize);
+            }
+        }
+
+        return entries * OptOutConst.EntrySize == dst.length ? dst : Arrays.copyOf(dst, entries * OptOutConst.EntrySize);
+    }
+
+    // in-place heap sort of entries [from, to) of store
+    static void sortRange(byte[] store, int from, int to, byte[] temp) {
+        final int base = from * OptOutConst.EntrySize;
+        final int n = to - from;
+        for (int i = (n >> 1) - 1; i >= 0; --i) {
+            siftDown(store, base, n, i, temp);
+        }
+        for (int end = n - 1; end > 0; --end) {
+            // swap item[0] (max value) to the last entry
+            System.arraycopy(store, base + end * OptOutConst.EntrySize, temp, 0, OptOutConst.EntrySize);
+            System.arraycopy(store, base, store, base + end * OptOutConst.EntrySize, OptOutConst.EntrySize);
+            System.arraycopy(temp, 0, store, base, OptOutConst.EntrySize);
+            siftDown(store, base, end, 0, temp);
+        }
+    }
+
+    private static void siftDown(byte[] store, int base, int size, int i, byte[] temp) {
+        System.arraycopy(store, base + i * OptOutConst.EntrySize, temp, 0, OptOutConst.EntrySize);
+        while (leftChild(i) < size) {
+            int child = leftChild(i);
+            int right = rightChild(i);
+            if (right < size && OptOutUtils.compareEntries(store, base + right * OptOutConst.EntrySize, store, base + child * OptOutConst.EntrySize) > 0) {
+                child = right;
+            }
+            if (OptOutUtils.compareEntries(temp, 0, store, base + child * OptOutConst.EntrySize) >= 0) break;
+            System.arraycopy(store, base + child * OptOutConst.EntrySize, store, base + i * OptOutConst.EntrySize, OptOutConst.EntrySize);
+            i = child;
+        }
+        System.arraycopy(temp, 0, store, base + i * OptOutConst.EntrySize, OptOutConst.EntrySize);
     }
 
     public void add(OptOutCollection otherStore) {
@@ -138,18 +261,6 @@ public class OptOutHeap extends OptOutCollection {
         }
     }
 
-    private int sortInline() {
-        // sort break heap property, size will be set to 0 after sort
-        int origSize = this.size;
-        while (--this.size > 0) {
-            // swap item[0] (max value) to the last entry
-            this.swapEntriesInHeap(0, this.size);
-            this.heapifyDown(0);
-        }
-
-        return origSize;
-    }
-
     private void checkCapacity(int newEntries) {
         int sizeNeeded = newEntries + size;
         if (sizeNeeded > capacity) {
@@ -166,6 +277,9 @@ public class OptOutHeap extends OptOutCollection {
         }
     }
 
+    // toPartition doesn't depend on the heap order, but add keeps it: OptOutHeap is public, and callers (and
+    // OptOutHeapTest) read entries in heap order through get with parent, leftChild and rightChild. On random
+    // identity hashes a sift up averages fewer than two comparisons, little next to the sort in toPartition.
     private void heapifyUp(int last) {
         // heapifyUp not needed for the first entry
         if (last == 0) return;
@@ -192,62 +306,17 @@ public class OptOutHeap extends OptOutCollection {
         this.copyEntryIntoHeap(temp, i);
     }
 
-    private void heapifyDown(int i) {
-        // heapifyDown not needed for entry with no childs
-        if (leftChild(i) >= size) return;
-
-        // assuming heapify from index 0, make a copy entry at index 0
-        assert i == 0;
-        byte[] temp = this.copyEntryToTemp(i);
-
-        do {
-            // find max child for i
-            int child = maxChild(i);
-
-            // break the loop if heap property is already satisfied: item[i] >= item[maxChild]
-            int cmp = this.compareToEntryInHeap(temp, child);
-            if (cmp >= 0) break;
-
-            // move child up, and go one level down
-            this.copyEntriesInHeap(child, i);
-            i = child;
-
-            // check if current i has child or not
-        } while (leftChild(i) < size);
-
-        // move entry into index i
-        this.copyEntryIntoHeap(temp, i);
-    }
-
-    private int maxChild(int i) {
-        int left = leftChild(i);
-        int right = rightChild(i);
-        // return left child's index, if there is no right child
-        if (right >= size) return left;
-        // otherwise return the larger one
-        return this.compareEntriesInHeap(left, right) > 0 ? left : right;
-    }
-
     private int compareToEntryInHeap(byte[] entryAsBytes, int heapPos) {
         int heapBufPos = heapPos * OptOutConst.EntrySize;
-        // comparing only identity hash (length == Sha256Bytes)
-        return OptOutUtils.compareByteRange(entryAsBytes, 0, store, heapBufPos, OptOutConst.Sha256Bytes);
+        // ordered by identity hash, the rest of the entry only breaks ties
+        return OptOutUtils.compareEntries(entryAsBytes, 0, store, heapBufPos);
     }
 
     private int compareEntriesInHeap(int i, int j) {
         int p1 = i * OptOutConst.EntrySize;
         int p2 = j * OptOutConst.EntrySize;
-        // comparing only identity hash (length == Sha256Bytes)
-        return OptOutUtils.compareByteRange(store, p1, store, p2, OptOutConst.Sha256Bytes);
-    }
-
-    private void swapEntriesInHeap(int srcPos, int dstPos) {
-        // dst => temp
-        byte[] temp = this.copyEntryToTemp(dstPos);
-        // src => dst
-        this.copyEntriesInHeap(srcPos, dstPos);
-        // temp => src
-        this.copyEntryIntoHeap(temp, srcPos);
+        // ordered by identity hash, the rest of the entry only breaks ties
+        return OptOutUtils.compareEntries(store, p1, store, p2);
     }
 
     private void copyEntriesInHeap(int srcPos, int dstPos) {
@@ -271,12 +340,4 @@ public class OptOutHeap extends OptOutCollection {
         System.arraycopy(store, heapBufPos, tempEntry, 0, OptOutConst.EntrySize);
         return tempEntry;
     }
-
-    private long getEntryTimestamp(int pos) {
-        return OptOutEntry.parseTimestamp(store, pos * OptOutConst.EntrySize);
-    }
-
-    private void setEntryTimestamp(int pos, long timestamp) {
-        OptOutEntry.setTimestamp(store, pos * OptOutConst.EntrySize, timestamp);
-    }
 }
@@ -0,0 +1,100 @@
+package com.uid2.shared.optout;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+// OptOutMerger produces a new partition by streaming a k-way merge over collections that are
+// already sorted by identity hash (partitions, or deltas sorted with OptOutHeap.toPartition).
+//
+// Entries with the same identity hash are merged into a single entry with the highest timestamp,
+// the same rule as OptOutHeap.toPartition(mergeDups = true). The first entry seen for a hash, in
+// input order, provides the advertising id and metadata.
+//
+// Output is written entry by entry, so besides the inputs only O(k) cursors and a single pending
+// entry are held in memory, instead of copying everything into an OptOutHeap and sorting it again.
+public class OptOutMerger {
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    public static long merge(Collection<? extends OptOutCollection> sortedInputs, Path outputFile) throws IOException {
+        try (OutputStream out = Files.newOutputStream(outputFile)) {
+            return merge(sortedInputs, out);
+        }
+    }
+
+    // returns the number of entries written
+    public static long merge(Collection<? extends OptOutCollection> sortedInputs, OutputStream out) throws IOException {
+        final PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, sortedInputs.size()), OptOutMerger::compareCursors);
+        int order = 0;
+        for (OptOutCollection input : sortedInputs) {
+            if (input.size() > 0) {
+                queue.add(new Cursor(input, order++));
+            }
+        }
+
+        final BufferedOutputStream buffered = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+        final byte[] pending = new byte[OptOutConst.EntrySize];
+        boolean hasPending = false;
+        long written = 0;
+
+        while (!queue.isEmpty()) {
+            final Cursor cursor = queue.poll();
+            final OptOutEntryView entry = cursor.view;
+
+            if (hasPending && entry.identityHashEquals(pending)) {
+                // same identity hash: keep the highest timestamp
+                final long ts = entry.timestamp();
+                if (ts > OptOutEntry.parseTimestamp(pending, 0)) {
+                    OptOutEntry.setTimestamp(pending, 0, ts);
+                }
+            } else {
+                if (hasPending) {
+                    buffered.write(pending);
+                    ++written;
+                }
+                entry.copyEntryTo(pending, 0);
+                hasPending = true;
+            }
+
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+
+        if (hasPending) {
+            buffered.write(pending);
+            ++written;
+        }
+        buffered.flush();
+        return written;
+    }
+
+    private static int compareCursors(Cursor a, Cursor b) {
+        final int cmp = a.view.compareIdentityHash(b.view);
+        // on equal hashes, prefer earlier inputs so the result does not depend on queue internals
+        return cmp != 0 ? cmp : Integer.compare(a.order, b.order);
+    }
+
+    private static class Cursor {
+        private final OptOutEntryView view;
+        private final int size;
+        private final int order;
+        private int position = 0;
+
+        Cursor(OptOutCollection collection, int order) {
+            this.view = new OptOutEntryView(collection.getStore(), 0);
+            this.size = collection.size();
+            this.order = order;
+        }
+
+        boolean advance() {
+            if (++this.position >= this.size) return false;
+            this.view.moveTo(this.position);
+            return true;
+        }
+    }
+}
@@ -2,20 +2,50 @@ package com.uid2.shared.optout;
 
 // OptOutPartition is a sorted array of items, each item is a range of bytes within the store
 // that stores identity hash (byte[]), advertising id (byte[]), and the timestamp of the optout entry
+//
+// Optionally, a prefix index can be built over the sorted entries: a table mapping the top
+// indexBits bits of the identity hash to the first entry with that prefix. Since identity hashes
+// are uniformly distributed, a lookup then only needs to binary search a bucket of about
+// size() / 2^indexBits entries. The index costs 4 * (2^indexBits + 1) bytes of memory.
 public class OptOutPartition extends OptOutCollection {
+    public static final int MAX_INDEX_BITS = 24;
+
     private byte[] store = null;
+    private int indexBits = 0;
+    private int[] index = null;
 
     public OptOutPartition(byte[] backingStore) {
+        this(backingStore, 0);
+    }
+
+    // indexBits == 0 means no prefix index
+    public OptOutPartition(byte[] backingStore, int indexBits) {
         super(backingStore);
+        assert indexBits >= 0 && indexBits <= MAX_INDEX_BITS;
         this.store = backingStore;
+        if (indexBits > 0) {
+            this.indexBits = indexBits;
+            this.index = buildIndex(backingStore, this.size(), indexBits);
+        }
+    }
+
+    // index bits that give on average one entry per bucket, capped by maxIndexBits to limit memory usage
+    public static int idealIndexBits(int entries, int maxIndexBits) {
+        assert maxIndexBits >= 0 && maxIndexBits <= MAX_INDEX_BITS;
+        if (entries <= 1) return 0;
+        return Math.min(OptOutUtils.logTwo(entries), maxIndexBits);
+    }
+
+    public int indexBits() {
+        return this.indexBits;
     }
 
     public boolean contains(byte[] identityHash) {
-        return -1 != this.binarySearch(0, this.size(), identityHash);
+        return -1 != this.search(identityHash);
     }
 
     public long getOptOutTimestamp(byte[] identityHash) {
-        int entryIndex = this.binarySearch(0, this.size(), identityHash);
+        int entryIndex = this.search(identityHash);
         if (-1 == entryIndex) {
             // -1 to indicate optout entry not exists
             return -1;
@@ -24,24 +54,55 @@ public class OptOutPartition extends OptOutCollection {
         return getTimestampByIndex(entryIndex);
     }
 
-    // A recursive binary search function. It returns
-    // location of bytes in given array arr[left..right] is present,
-    // otherwise -1
+    private int search(byte[] identityHash) {
+        if (this.index == null) {
+            return this.binarySearch(0, this.size(), identityHash);
+        }
+
+        int bucket = bucketOf(identityHash, 0, this.indexBits);
+        return this.binarySearch(this.index[bucket], this.index[bucket + 1], identityHash);
+    }
+
+    // index[b] is the first entry whose hash prefix is >= b, index[2^indexBits] is the number of entries
+    private static int[] buildIndex(byte[] store, int entries, int indexBits) {
+        final int buckets = 1 << indexBits;
+        final int[] index = new int[buckets + 1];
+        int entry = 0;
+        for (int bucket = 0; bucket < buckets; ++bucket) {
+            index[bucket] = entry;
+            while (entry < entries && bucketOf(store, entry * OptOutConst.EntrySize, indexBits) == bucket) {
+                ++entry;
+            }
+        }
+        index[buckets] = entries;
+        return index;
+    }
+
+    private static int bucketOf(byte[] bytes, int offset, int indexBits) {
+        return OptOutUtils.toIntBE(bytes, offset) >>> (Integer.SIZE - indexBits);
+    }
+
+    // An iterative binary search. It returns the location of identityHash
+    // if present in entries [left..right), otherwise -1
     private int binarySearch(int left, int right, byte[] identityHash) {
-        if (right > left) {
+        // identityHash must be of expected size that contains the SHA256 hash
+        assert identityHash.length == OptOutConst.Sha256Bytes;
+
+        while (right > left) {
+            // same mid as the previous recursive version, so duplicates resolve to the same entry
             int mid = left + (right - 1 - left) / 2;
-            int cmp = this.compareEntryToIdentityHash(mid, identityHash);
+            int cmp = OptOutUtils.compareSha256(this.store, mid * OptOutConst.EntrySize, identityHash, 0);
 
             // If the element is present at the middle itself
             if (cmp == 0)
                 return mid;
 
-            // If element is smaller than mid, then it can only be present in left subarray
+            // If element is smaller than mid, then it can only be present in left subarray,
+            // else the element can only be present in right subarray
             if (cmp > 0)
-                return binarySearch(left, mid, identityHash);
-
-            // Else the element can only be present in right subarray
-            return binarySearch(mid + 1, right, identityHash);
+                right = mid;
+            else
+                left = mid + 1;
         }
 
         // We reach here when element is not
@@ -49,17 +110,6 @@ public class OptOutPartition extends OptOutCollection {
         return -1;
     }
 
-    private int compareEntryToIdentityHash(int entryIndex, byte[] identityHash) {
-        // identityHash must be of expected size that contains the SHA256 hash
-        assert identityHash.length == OptOutConst.Sha256Bytes;
-
-        // start byte index is calculated from itemIndex and optout entry size
-        int byteIndex = entryIndex * OptOutConst.EntrySize;
-
-        // compare if bytes match
-        return OptOutUtils.compareByteRange(this.store, byteIndex, identityHash, 0, OptOutConst.Sha256Bytes);
-    }
-
     private long getTimestampByIndex(int entryIndex) {
         // start byte index is calculated from itemIndex and optout entry size
         return OptOutEntry.parseTimestamp(this.store, entryIndex * OptOutConst.EntrySize);
@@ -12,11 +12,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -38,6 +39,12 @@ public class OptOutUtils {
     public static ObjectMapper mapper = new ObjectMapper();
     public static String tmpDir = System.getProperty("java.io.tmpdir");
 
+    // reads 8 bytes at any offset of a byte[] as a big-endian long
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
     public static Base64.Encoder base64Encoder = Base64.getEncoder();
     public static Base64.Decoder base64Decoder = Base64.getDecoder();
 
@@ -179,37 +186,47 @@ public class OptOutUtils {
     }
 
     public static byte[] toByteArray(int num) {
-        return ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(num).array();
+        final byte[] bytes = new byte[Integer.BYTES];
+        INT_LE.set(bytes, 0, num);
+        return bytes;
     }
 
     public static byte[] toByteArray(long num) {
-        return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(num).array();
+        final byte[] bytes = new byte[Long.BYTES];
+        LONG_LE.set(bytes, 0, num);
+        return bytes;
     }
 
     public static byte[] toByteArrayBE(long num) {
-        return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.BIG_ENDIAN).putLong(num).array();
+        final byte[] bytes = new byte[Long.BYTES];
+        LONG_BE.set(bytes, 0, num);
+        return bytes;
     }
 
     public static int toInt(byte[] bytes, int byteIndex) {
         assert byteIndex >= 0 && byteIndex + Integer.BYTES <= bytes.length;
-        int val = 0;
-        for (int i = 0; i < Integer.BYTES; i++) {
-            val += ((int) bytes[byteIndex + i] & 0xffL) << (8 * i);
-        }
-        return val;
+        return (int) INT_LE.get(bytes, byteIndex);
     }
 
     public static long toLong(byte[] bytes, int byteIndex) {
         assert byteIndex >= 0 && byteIndex + Long.BYTES <= bytes.length;
-        long val = 0;
-        for (int i = 0; i < Long.BYTES; i++) {
-            val += ((long) bytes[byteIndex + i] & 0xffL) << (8 * i);
-        }
-        return val;
+        return (long) LONG_LE.get(bytes, byteIndex);
+    }
+
+    // writes num little endian at byteIndex, the counterpart of toLong
+    public static void putLong(byte[] bytes, int byteIndex, long num) {
+        assert byteIndex >= 0 && byteIndex + Long.BYTES <= bytes.length;
+        LONG_LE.set(bytes, byteIndex, num);
+    }
+
+    public static int toIntBE(byte[] bytes, int byteIndex) {
+        assert byteIndex >= 0 && byteIndex + Integer.BYTES <= bytes.length;
+        return (int) INT_BE.get(bytes, byteIndex);
     }
 
     public static long toLongBE(byte[] bytes, int byteIndex) {
-        return ByteBuffer.wrap(bytes, 0, Long.BYTES).order(ByteOrder.BIG_ENDIAN).getLong();
+        assert byteIndex >= 0 && byteIndex + Long.BYTES <= bytes.length;
+        return (long) LONG_BE.get(bytes, byteIndex);
     }
 
     // positive if arr1 > arr2
@@ -233,6 +250,30 @@ public class OptOutUtils {
         return 0;
     }
 
+    // same ordering as compareByteRange over Sha256Bytes, but compares the hashes as 4 unsigned big-endian longs
+    // positive if arr1 > arr2
+    // negative if arr1 < arr2
+    // 0 if arr1 == arr2
+    public static int compareSha256(byte[] arr1, int idx1, byte[] arr2, int idx2) {
+        assert idx1 >= 0 && idx1 + OptOutConst.Sha256Bytes <= arr1.length;
+        assert idx2 >= 0 && idx2 + OptOutConst.Sha256Bytes <= arr2.length;
+        for (int i = 0; i < OptOutConst.Sha256Bytes; i += Long.BYTES) {
+            long a = (long) LONG_BE.get(arr1, idx1 + i);
+            long b = (long) LONG_BE.get(arr2, idx2 + i);
+            if (a != b) return Long.compareUnsigned(a, b);
+        }
+        return 0;
+    }
+
+    // total order over whole entries: identity hash first, then the remaining bytes break ties,
+    // so that sorting produces the same output regardless of algorithm
+    public static int compareEntries(byte[] arr1, int idx1, byte[] arr2, int idx2) {
+        int cmp = OptOutUtils.compareSha256(arr1, idx1, arr2, idx2);
+        if (cmp != 0) return cmp;
+        return OptOutUtils.compareByteRange(arr1, idx1 + OptOutConst.Sha256Bytes, arr2, idx2 + OptOutConst.Sha256Bytes,
+            OptOutConst.EntrySize - OptOutConst.Sha256Bytes);
+    }
+
     public static int compareByte(byte a, byte b) {
         return Byte.toUnsignedInt(a) - Byte.toUnsignedInt(b);
     }
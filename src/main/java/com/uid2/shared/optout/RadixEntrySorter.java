@@ -0,0 +1,95 @@
+package com.uid2.shared.optout;
+
+// RadixEntrySorter sorts opt-out entries by identity hash, in the same total order as
+// OptOutUtils.compareEntries, so its output is byte for byte the same as a heap sort.
+//
+// Identity hashes are uniformly random SHA-256 values, so a single counting pass over the leading
+// bits of the hash spreads the entries into buckets of only a few entries each. Entries are scattered
+// from the source into their buckets in the destination, which doubles as the copy a caller would
+// otherwise make before sorting, and every bucket is then finished with an insertion sort.
+//
+// Buckets that end up large (many duplicate hashes, or input that is not random) fall back to a
+// heap sort, so the worst case stays O(n log n).
+public class RadixEntrySorter {
+    // aim for a handful of entries per bucket on random input
+    private static final int targetBucketEntries = 4;
+
+    // 2^24 buckets need a 64MB int array (the only one, it holds counts and then bucket bounds),
+    // enough to keep buckets small up to ~64M entries
+    private static final int maxBucketBits = 24;
+
+    // buckets larger than this are heap sorted instead of insertion sorted
+    private static final int insertionSortMaxEntries = 32;
+
+    public static byte[] sort(OptOutCollection collection) {
+        final byte[] sorted = new byte[collection.size() * OptOutConst.EntrySize];
+        sort(collection.getStore(), 0, collection.size(), sorted);
+        return sorted;
+    }
+
+    // writes entries [from, to) of src, sorted, to entries [from, to) of dst; src is left untouched
+    public static void sort(byte[] src, int from, int to, byte[] dst) {
+        assert src != dst;
+        assert from >= 0 && from <= to && to * OptOutConst.EntrySize <= src.length;
+        assert to * OptOutConst.EntrySize <= dst.length;
+
+        final int entries = to - from;
+        if (entries == 0) return;
+
+        final int bits = bucketBits(entries);
+        final int buckets = 1 << bits;
+        // before the scatter, bounds[b] is the first entry of bucket b, relative to from; the scatter uses it
+        // as the next free slot of the bucket, so afterwards bounds[b] is the end of bucket b instead
+        final int[] bounds = new int[buckets];
+
+        for (int i = from; i < to; ++i) {
+            final int b = bucketOf(src, i * OptOutConst.EntrySize, bits);
+            if (b + 1 < buckets) ++bounds[b + 1];
+        }
+        for (int b = 1; b < buckets; ++b) {
+            bounds[b] += bounds[b - 1];
+        }
+
+        for (int i = from; i < to; ++i) {
+            final int srcPos = i * OptOutConst.EntrySize;
+            final int dstEntry = from + bounds[bucketOf(src, srcPos, bits)]++;
+            System.arraycopy(src, srcPos, dst, dstEntry * OptOutConst.EntrySize, OptOutConst.EntrySize);
+        }
+
+        final byte[] temp = new byte[OptOutConst.EntrySize];
+        int bucketStart = 0;
+        for (int b = 0; b < buckets; ++b) {
+            final int bucketEnd = bounds[b];
+            final int bucketEntries = bucketEnd - bucketStart;
+            if (bucketEntries >= 2 && bucketEntries <= insertionSortMaxEntries) {
+                insertionSort(dst, from + bucketStart, from + bucketEnd, temp);
+            } else if (bucketEntries > insertionSortMaxEntries) {
+                OptOutHeap.sortRange(dst, from + bucketStart, from + bucketEnd, temp);
+            }
+            bucketStart = bucketEnd;
+        }
+    }
+
+    static int bucketBits(int entries) {
+        final int proposed = OptOutUtils.logTwo(Math.max(1, entries / targetBucketEntries));
+        return Math.max(1, Math.min(maxBucketBits, proposed));
+    }
+
+    private static int bucketOf(byte[] store, int offset, int bits) {
+        return OptOutUtils.toIntBE(store, offset) >>> (32 - bits);
+    }
+
+    private static void insertionSort(byte[] store, int from, int to, byte[] temp) {
+        for (int i = from + 1; i < to; ++i) {
+            int j = i;
+            if (OptOutUtils.compareEntries(store, (j - 1) * OptOutConst.EntrySize, store, j * OptOutConst.EntrySize) <= 0) continue;
+
+            System.arraycopy(store, i * OptOutConst.EntrySize, temp, 0, OptOutConst.EntrySize);
+            do {
+                System.arraycopy(store, (j - 1) * OptOutConst.EntrySize, store, j * OptOutConst.EntrySize, OptOutConst.EntrySize);
+                --j;
+            } while (j > from && OptOutUtils.compareEntries(store, (j - 1) * OptOutConst.EntrySize, temp, 0) > 0);
+            System.arraycopy(temp, 0, store, j * OptOutConst.EntrySize, OptOutConst.EntrySize);
+        }
+    }
+}
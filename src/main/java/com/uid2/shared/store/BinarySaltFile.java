@@ -0,0 +1,130 @@
+package com.uid2.shared.store;
+
+import com.uid2.shared.cloud.CloudUtils;
+import com.uid2.shared.model.SaltEntry;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+  Binary salt file format, an alternative to the csv salt file selected by "format" : "binary" in metadata.json.
+  All numbers are big endian.
+
+    header:  <magic:int32> <version:int32> <count:int32> <salt_length:int32>
+    records: <id:int32> <last_updated:int64> <salt:salt_length bytes of US-ASCII>   (count times)
+
+  Records are fixed width, so record i is found by index arithmetic and the file can be used in place
+  through a mapped buffer without creating an object per record.
+ */
+public final class BinarySaltFile {
+    public static final int MAGIC = 0x55494453; // "UIDS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private static final int ID_OFFSET = 0;
+    private static final int LAST_UPDATED_OFFSET = Integer.BYTES;
+    private static final int SALT_OFFSET = Integer.BYTES + Long.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int saltLength;
+    private final int recordSize;
+
+    public BinarySaltFile(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        if (this.buffer.capacity() < HEADER_SIZE) {
+            throw new IllegalArgumentException("binary salt file too short: " + this.buffer.capacity() + " bytes");
+        }
+        if (this.buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a binary salt file");
+        }
+        final int version = this.buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported binary salt file version " + version);
+        }
+        this.count = this.buffer.getInt(2 * Integer.BYTES);
+        this.saltLength = this.buffer.getInt(3 * Integer.BYTES);
+        this.recordSize = SALT_OFFSET + this.saltLength;
+        final long expected = HEADER_SIZE + (long) this.count * this.recordSize;
+        if (this.count < 0 || this.saltLength < 0 || expected != this.buffer.capacity()) {
+            throw new IllegalArgumentException("binary salt file size " + this.buffer.capacity() + " does not match header, expected " + expected);
+        }
+    }
+
+    // copies the file to a temporary file and maps it, the temporary file is removed once mapped
+    public static BinarySaltFile load(InputStream input) throws IOException {
+        final Path temp = Files.createTempFile("salts", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                CloudUtils.transfer(Channels.newChannel(input), channel);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ)) {
+                // the mapping stays valid after the channel is closed
+                return new BinarySaltFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // mapped files can't be deleted on windows
+                temp.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    public static void write(SaltEntry[] entries, OutputStream output) throws IOException {
+        final int saltLength = entries.length == 0 ? 0 : entries[0].getSalt().length();
+        final DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.length);
+        out.writeInt(saltLength);
+        for (SaltEntry entry : entries) {
+            final byte[] salt = entry.getSalt().getBytes(StandardCharsets.US_ASCII);
+            if (salt.length != saltLength) {
+                throw new IllegalArgumentException("salt of entry " + entry.getId() + " is " + salt.length + " bytes, expected " + saltLength);
+            }
+            out.writeInt(Math.toIntExact(entry.getId()));
+            out.writeLong(entry.getLastUpdated());
+            out.write(salt);
+        }
+        out.flush();
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public long getId(int index) {
+        return this.buffer.getInt(this.offset(index) + ID_OFFSET);
+    }
+
+    public long getLastUpdated(int index) {
+        return this.buffer.getLong(this.offset(index) + LAST_UPDATED_OFFSET);
+    }
+
+    public String getSalt(int index) {
+        final byte[] salt = new byte[this.saltLength];
+        // absolute bulk get is java 13+, absolute single byte gets keep the shared buffer position untouched
+        // without allocating a duplicate
+        final int start = this.offset(index) + SALT_OFFSET;
+        for (int i = 0; i < salt.length; ++i) {
+            salt[i] = this.buffer.get(start + i);
+        }
+        return new String(salt, StandardCharsets.US_ASCII);
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index >= this.count) throw new IndexOutOfBoundsException("salt index " + index + ", size " + this.count);
+        return HEADER_SIZE + index * this.recordSize;
+    }
+}
@@ -33,6 +33,8 @@ public interface ISaltProvider {
         }
     }
 
+    // superseded by PowerOfTwoSaltEntryIndexer and FastRangeSaltEntryIndexer, which use more bits of the identity
+    // and avoid the modulo bias of reducing a 20 bit hash; kept for callers that depend on its mapping
     static class ModBasedSaltEntryIndexer implements ISaltEntryIndexer {
         private static final Logger LOGGER = LoggerFactory.getLogger(ModBasedSaltEntryIndexer.class);
 
@@ -42,4 +44,27 @@ public interface ISaltProvider {
             return hash % totalEntries;
         }
     }
+
+    // power of two sizes: the top log2(totalEntries) bits of the first 32 bits of the identity
+    static class PowerOfTwoSaltEntryIndexer implements ISaltEntryIndexer {
+        @Override
+        public int getIndex(byte[] shaBytes, int totalEntries) {
+            // a shift of 32 for a single entry table is fine on a long, unlike on an int
+            return (int) (first32Bits(shaBytes) >>> (Integer.numberOfLeadingZeros(totalEntries) + 1));
+        }
+    }
+
+    // any size: Lemire's fast range reduction, (x * n) >> 32 maps the first 32 bits of the identity
+    // uniformly onto [0, totalEntries) with a multiplication instead of a division
+    static class FastRangeSaltEntryIndexer implements ISaltEntryIndexer {
+        @Override
+        public int getIndex(byte[] shaBytes, int totalEntries) {
+            return (int) ((first32Bits(shaBytes) * totalEntries) >>> 32);
+        }
+    }
+
+    // the first 4 bytes of the identity as an unsigned big endian value
+    private static long first32Bits(byte[] shaBytes) {
+        return ((shaBytes[0] & 0xFFL) << 24) | ((shaBytes[1] & 0xFFL) << 16) | ((shaBytes[2] & 0xFFL) << 8) | (shaBytes[3] & 0xFFL);
+    }
 }
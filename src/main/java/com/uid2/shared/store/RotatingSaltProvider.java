@@ -12,15 +12,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.hashids.Hashids;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 /*
   1. metadata.json format
@@ -35,7 +42,8 @@ import java.util.stream.Collectors;
             "location" : "s3_path_to_file.txt",
             "id_prefix" : "a",
             "id_secret" : "<secret_key>",
-            "size" : 1048576
+            "size" : 1048576,
+            "format" : "csv" | "binary"     (optional, defaults to csv)
          }
        ]
     }
@@ -43,17 +51,34 @@ import java.util.stream.Collectors;
   2. salt file format
         <id>,   <hash_id>,    <salt>
         9000099,1614556800000,salt
+
+  3. binary salt file format, see BinarySaltFile
  */
 public class RotatingSaltProvider implements ISaltProvider, IMetadataVersionedStore {
     private static final Logger LOGGER = LoggerFactory.getLogger(RotatingSaltProvider.class);
     private static final int HashingSeed = 122054;
+    public static final String SaltFileFormatCsv = "csv";
+    public static final String SaltFileFormatBinary = "binary";
+    // csv files are parsed in chunks of at least this many bytes, ~15k salts
+    private static final int MinParseChunkBytes = 1 << 20;
+    // csv files are read in blocks of this many bytes, each parsed before the next is read, so a load holds one
+    // block per snapshot being loaded instead of the whole file (~60MB at 1M salts)
+    private static final int ParseBlockBytes = 8 << 20;
     public static RotatingSaltProvider INSTANCE;
     private final DownloadCloudStorage metadataStreamProvider;
     private final DownloadCloudStorage contentStreamProvider;
     private final String metadataPath;
-    private final AtomicReference<List<SaltSnapshot>> snapshotsByEffectiveTime = new AtomicReference<>();
+    private final int loadParallelism;
+    private final AtomicReference<SnapshotTimeline> snapshotsByEffectiveTime = new AtomicReference<>();
+    private ForkJoinPool loadPool = null;
 
     public RotatingSaltProvider(DownloadCloudStorage fileStreamProvider, String metadataPath) {
+        this(fileStreamProvider, metadataPath, Runtime.getRuntime().availableProcessors());
+    }
+
+    // loadParallelism bounds the threads used to download and parse snapshots during loadContent
+    public RotatingSaltProvider(DownloadCloudStorage fileStreamProvider, String metadataPath, int loadParallelism) {
+        this.loadParallelism = Math.max(1, loadParallelism);
         this.metadataStreamProvider = fileStreamProvider;
         if (fileStreamProvider instanceof UidCoreClient) {
             this.contentStreamProvider = ((UidCoreClient) fileStreamProvider).getContentStorage();
@@ -86,42 +111,131 @@ public class RotatingSaltProvider implements ISaltProvider, IMetadataVersionedSt
         final Instant now = Instant.now();
         final List<SaltSnapshot> snapshots = new ArrayList<>();
 
-        int saltCount = 0;
+        // snapshots are independent, load them concurrently; csv parsing of each one forks further onto the same pool
+        final List<Callable<SaltSnapshot>> loads = new ArrayList<>();
         for (int i = 0; i < salts.size(); ++i) {
-            final SaltSnapshot snapshot = this.loadSnapshot(salts.getJsonObject(i), firstLevelSalt, entryBuilder, now);
+            final JsonObject spec = salts.getJsonObject(i);
+            loads.add(() -> this.loadSnapshot(spec, firstLevelSalt, entryBuilder, now));
+        }
+
+        int saltCount = 0;
+        for (Future<SaltSnapshot> load : this.getLoadPool().invokeAll(loads)) {
+            final SaltSnapshot snapshot = getLoadResult(load);
             if (snapshot == null) continue;
             snapshots.add(snapshot);
 
             // don't sum up the salts from snapshots to avoid screwing up metrics
-            saltCount = snapshot.entries.length;
+            saltCount = snapshot.size();
         }
 
         // Store snapshots in order of them becoming effective
-        this.snapshotsByEffectiveTime.set(snapshots.stream()
+        this.snapshotsByEffectiveTime.set(new SnapshotTimeline(snapshots.stream()
                 .sorted(Comparator.comparing(SaltSnapshot::getEffective))
-                .collect(Collectors.toList()));
+                .collect(Collectors.toList())));
 
         return saltCount;
     }
 
+    // created on first load and reused by later refreshes, its idle worker threads exit on their own
+    private synchronized ForkJoinPool getLoadPool() {
+        if (this.loadPool == null) {
+            this.loadPool = new ForkJoinPool(this.loadParallelism);
+        }
+        return this.loadPool;
+    }
+
+    private static <T> T getLoadResult(Future<T> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
     public void loadContent() throws Exception {
         this.loadContent(this.getMetadata());
     }
 
     public List<SaltSnapshot> getSnapshots() {
-        return this.snapshotsByEffectiveTime.get();
+        final SnapshotTimeline timeline = this.snapshotsByEffectiveTime.get();
+        return timeline == null ? null : timeline.snapshots;
     }
 
     @Override
     public ISaltSnapshot getSnapshot(Instant asOf) {
-        final List<SaltSnapshot> snapshots = this.snapshotsByEffectiveTime.get();
-        // Last snapshot past its effective timestamp
-        ISaltSnapshot current = null;
-        for (SaltSnapshot snapshot : snapshots) {
-            if (!snapshot.isEffective(asOf)) break;
-            current = snapshot;
+        final SnapshotTimeline timeline = this.snapshotsByEffectiveTime.get();
+        return timeline == null ? null : timeline.getSnapshot(asOf.toEpochMilli());
+    }
+
+    // The snapshot getSnapshot returns only changes when some snapshot becomes effective or expires, so the
+    // timeline precomputes it for each interval between those transitions. The interval of the last lookup
+    // is cached, which makes the common case, asOf still before the next transition, a range check.
+    //
+    // Times are compared in milliseconds, the precision of effective and expires in metadata.
+    static final class SnapshotTimeline {
+        private final List<SaltSnapshot> snapshots;
+        // interval i is [transitions[i - 1], transitions[i]), the first and last intervals are unbounded
+        private final long[] transitions;
+        private final Interval[] intervals;
+        private volatile Interval current;
+
+        SnapshotTimeline(List<SaltSnapshot> snapshotsByEffectiveTime) {
+            this.snapshots = snapshotsByEffectiveTime;
+            this.transitions = snapshotsByEffectiveTime.stream()
+                    .flatMapToLong(s -> LongStream.of(s.getEffective().toEpochMilli(), s.getExpires().toEpochMilli()))
+                    .sorted()
+                    .distinct()
+                    .toArray();
+            this.intervals = new Interval[this.transitions.length + 1];
+            for (int i = 0; i < this.intervals.length; ++i) {
+                final long from = i == 0 ? Long.MIN_VALUE : this.transitions[i - 1];
+                final long until = i == this.transitions.length ? Long.MAX_VALUE : this.transitions[i];
+                this.intervals[i] = new Interval(from, until, this.findSnapshot(from));
+            }
+            this.current = this.intervals[0];
+        }
+
+        ISaltSnapshot getSnapshot(long asOfMillis) {
+            Interval interval = this.current;
+            if (asOfMillis < interval.from || asOfMillis >= interval.until) {
+                interval = this.intervals[this.intervalIndex(asOfMillis)];
+                this.current = interval;
+            }
+            return interval.snapshot;
+        }
+
+        // the number of transitions at or before asOfMillis
+        private int intervalIndex(long asOfMillis) {
+            int lo = 0, hi = this.transitions.length;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (this.transitions[mid] <= asOfMillis) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // last snapshot past its effective timestamp, stopping at the first one that isn't effective
+        private ISaltSnapshot findSnapshot(long asOfMillis) {
+            ISaltSnapshot current = null;
+            for (SaltSnapshot snapshot : this.snapshots) {
+                if (snapshot.getEffective().toEpochMilli() > asOfMillis || snapshot.getExpires().toEpochMilli() <= asOfMillis) break;
+                current = snapshot;
+            }
+            return current;
+        }
+
+        private static final class Interval {
+            private final long from;
+            private final long until;
+            private final ISaltSnapshot snapshot;
+
+            Interval(long from, long until, ISaltSnapshot snapshot) {
+                this.from = from;
+                this.until = until;
+                this.snapshot = snapshot;
+            }
         }
-        return current;
     }
 
     private SaltSnapshot loadSnapshot(JsonObject spec, String firstLevelSalt, SaltEntryBuilder entryBuilder, Instant now) throws Exception {
@@ -133,42 +247,187 @@ public class RotatingSaltProvider implements ISaltProvider, IMetadataVersionedSt
         if (now.isAfter(expires)) return null;
 
         final String path = spec.getString("location");
-        int idx = 0;
+        final String format = spec.getString("format", SaltFileFormatCsv);
+        if (SaltFileFormatBinary.equals(format)) {
+            final BinarySaltFile file;
+            try (InputStream inputStream = this.contentStreamProvider.download(path)) {
+                file = BinarySaltFile.load(inputStream);
+            }
+            if (file.size() != spec.getInteger("size")) {
+                throw new IllegalStateException("binary salt file has " + file.size() + " salts, expected size " + spec.getInteger("size"));
+            }
+            LOGGER.info("Loaded " + file.size() + " binary salts");
+            return new MappedSaltSnapshot(effective, expires, file, entryBuilder.idHashingScheme, firstLevelSalt);
+        } else if (!SaltFileFormatCsv.equals(format)) {
+            throw new IllegalArgumentException("unknown salt file format " + format + " for " + path);
+        }
+
         final SaltEntry[] entries = new SaltEntry[spec.getInteger("size")];
+        final int count;
+        try (InputStream inputStream = this.contentStreamProvider.download(path)) {
+            count = parseSalts(inputStream, entries, entryBuilder, ParseBlockBytes, this.loadParallelism * 4);
+        }
+
+        LOGGER.info("Loaded " + count + " salts");
+        return new SaltSnapshot(effective, expires, entries, firstLevelSalt);
+    }
 
-        try (InputStream inputStream = this.contentStreamProvider.download(path);
-             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-             BufferedReader reader = new BufferedReader(inputStreamReader)) {
-            for (String l; (l = reader.readLine()) != null; ++idx) {
-                final SaltEntry entry = entryBuilder.toEntry(l);
-                entries[idx] = entry;
+    // parses a csv salt file read from input in blocks of blockBytes (grown if a line doesn't fit), each block
+    // ending at a line boundary and parsed in up to maxChunks chunks before the next one is read; returns the
+    // number of lines
+    static int parseSalts(InputStream input, SaltEntry[] entries, SaltEntryBuilder entryBuilder, int blockBytes, int maxChunks) throws IOException {
+        byte[] block = new byte[blockBytes];
+        int filled = 0;
+        int count = 0;
+        boolean eof = false;
+        while (!eof) {
+            filled += input.readNBytes(block, filled, block.length - filled);
+            // readNBytes only stops short of filling the block at the end of the stream
+            eof = filled < block.length;
+
+            // the partial line after the last newline is carried over to the next block
+            final int end = eof ? filled : lastLineEnd(block, filled);
+            if (end == 0 && !eof) {
+                block = Arrays.copyOf(block, block.length * 2);
+                continue;
             }
+            final int chunks = Math.max(1, Math.min(maxChunks, end / MinParseChunkBytes));
+            count += parseSalts(block, 0, end, entries, count, entryBuilder, chunks);
+            System.arraycopy(block, end, block, 0, filled - end);
+            filled -= end;
         }
+        return count;
+    }
 
-        LOGGER.info("Loaded " + idx + " salts");
-        return new SaltSnapshot(effective, expires, entries, firstLevelSalt);
+    static int parseSalts(byte[] data, SaltEntry[] entries, SaltEntryBuilder entryBuilder, int chunks) {
+        return parseSalts(data, 0, data.length, entries, 0, entryBuilder, chunks);
+    }
+
+    // parses the lines in [from, to) of a csv salt file into entries from firstEntry on, in chunks split at line
+    // boundaries that are parsed concurrently on the current fork-join pool (or the common pool when not called
+    // from one); returns the number of lines
+    private static int parseSalts(byte[] data, int from, int to, SaltEntry[] entries, int firstEntry, SaltEntryBuilder entryBuilder, int chunks) {
+        final int[] bounds = new int[chunks + 1];
+        bounds[0] = from;
+        for (int c = 1; c < chunks; ++c) {
+            bounds[c] = Math.max(bounds[c - 1], nextLineStart(data, from + (int) ((long) (to - from) * c / chunks), to));
+        }
+        bounds[chunks] = to;
+
+        // entry index each chunk starts at, from the line counts of the chunks before it
+        final int[] firstIndex = new int[chunks + 1];
+        firstIndex[0] = firstEntry;
+        final List<RecursiveAction> counts = new ArrayList<>();
+        for (int c = 0; c < chunks; ++c) {
+            final int chunk = c;
+            counts.add(action(() -> firstIndex[chunk + 1] = countLines(data, bounds[chunk], bounds[chunk + 1])));
+        }
+        ForkJoinTask.invokeAll(counts);
+        for (int c = 0; c < chunks; ++c) {
+            firstIndex[c + 1] += firstIndex[c];
+        }
+        if (firstIndex[chunks] > entries.length) {
+            throw new IllegalStateException("salt file has " + firstIndex[chunks] + " lines, more than its size " + entries.length);
+        }
+
+        final List<RecursiveAction> parses = new ArrayList<>();
+        for (int c = 0; c < chunks; ++c) {
+            final int chunk = c;
+            parses.add(action(() -> parseLines(data, bounds[chunk], bounds[chunk + 1], entries, firstIndex[chunk], entryBuilder)));
+        }
+        ForkJoinTask.invokeAll(parses);
+        return firstIndex[chunks] - firstEntry;
+    }
+
+    private static RecursiveAction action(Runnable runnable) {
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                runnable.run();
+            }
+        };
+    }
+
+    private static int nextLineStart(byte[] data, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (data[i] == '\n') return i + 1;
+        }
+        return to;
+    }
+
+    // the end of the last complete line in data[0, to), 0 if there is none
+    private static int lastLineEnd(byte[] data, int to) {
+        for (int i = to - 1; i >= 0; --i) {
+            if (data[i] == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    // lines as BufferedReader.readLine counts them: a last line without a newline counts, a trailing newline doesn't add one
+    private static int countLines(byte[] data, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; ++i) {
+            if (data[i] == '\n') ++lines;
+        }
+        if (to > from && data[to - 1] != '\n') ++lines;
+        return lines;
+    }
+
+    private static void parseLines(byte[] data, int from, int to, SaltEntry[] entries, int firstIndex, SaltEntryBuilder entryBuilder) {
+        int idx = firstIndex;
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && data[lineEnd] != '\n') ++lineEnd;
+            final int next = lineEnd + 1;
+            if (lineEnd > lineStart && data[lineEnd - 1] == '\r') --lineEnd;
+            entries[idx++] = entryBuilder.toEntry(new String(data, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+            lineStart = next;
+        }
     }
 
     public static class SaltSnapshot implements ISaltSnapshot {
         private final Instant effective;
         private final Instant expires;
         private final SaltEntry[] entries;
+        private final int size;
         private final String firstLevelSalt;
         private final ISaltEntryIndexer saltEntryIndexer;
+        private final SaltLastUpdatedIndex lastUpdatedIndex;
+        // the result of the last getModifiedSince call, callers tend to ask for the same timestamp repeatedly
+        private volatile ModifiedSince lastModifiedSince = null;
         private static final ISaltEntryIndexer staticMillionEntryIndexer = new OneMillionSaltEntryIndexer();
-        private static final ISaltEntryIndexer staticModBasedIndexer = new ModBasedSaltEntryIndexer();
+        private static final ISaltEntryIndexer staticPowerOfTwoIndexer = new PowerOfTwoSaltEntryIndexer();
+        private static final ISaltEntryIndexer staticFastRangeIndexer = new FastRangeSaltEntryIndexer();
 
         public SaltSnapshot(Instant effective, Instant expires, SaltEntry[] entries, String firstLevelSalt) {
+            this(effective, expires, entries, entries.length, firstLevelSalt,
+                    SaltLastUpdatedIndex.build(entries.length, i -> entries[i] != null, i -> entries[i].getLastUpdated()));
+        }
+
+        // for snapshots that keep their entries elsewhere and override getEntry, entries is null
+        protected SaltSnapshot(Instant effective, Instant expires, SaltEntry[] entries, int size, String firstLevelSalt,
+                               SaltLastUpdatedIndex lastUpdatedIndex) {
             this.effective = effective;
             this.expires = expires;
             this.entries = entries;
+            this.size = size;
             this.firstLevelSalt = firstLevelSalt;
-            if (entries.length == 1_048_576) {
-                LOGGER.info("Total salt entries 1 million, " + entries.length +", special production salt entry indexer");
-                this.saltEntryIndexer = staticMillionEntryIndexer;
+            this.lastUpdatedIndex = lastUpdatedIndex;
+            this.saltEntryIndexer = indexerFor(size);
+        }
+
+        // 2^20 keeps the production mapping, which predates the other indexers
+        static ISaltEntryIndexer indexerFor(int size) {
+            if (size == 1_048_576) {
+                LOGGER.info("Total salt entries 1 million, " + size +", special production salt entry indexer");
+                return staticMillionEntryIndexer;
+            } else if (Integer.bitCount(size) == 1) {
+                LOGGER.info("Total salt entries " + size +", using power of two salt entry indexer");
+                return staticPowerOfTwoIndexer;
             } else {
-                LOGGER.warn("Total salt entries " + entries.length +", using slower mod-based indexer");
-                this.saltEntryIndexer = staticModBasedIndexer;
+                LOGGER.info("Total salt entries " + size +", using fast range salt entry indexer");
+                return staticFastRangeIndexer;
             }
         }
 
@@ -184,6 +443,14 @@ public class RotatingSaltProvider implements ISaltProvider, IMetadataVersionedSt
             return !this.effective.isAfter(asOf) && this.expires.isAfter(asOf);
         }
 
+        public int size() {
+            return this.size;
+        }
+
+        protected SaltEntry getEntry(int idx) {
+            return this.entries[idx];
+        }
+
         @Override
         public String getFirstLevelSalt() { return firstLevelSalt; }
         @Override
@@ -191,20 +458,99 @@ public class RotatingSaltProvider implements ISaltProvider, IMetadataVersionedSt
 
         @Override
         public SaltEntry getRotatingSalt(byte[] identity) {
-            final int idx = saltEntryIndexer.getIndex(identity, entries.length);
-            return this.entries[idx];
+            final int idx = saltEntryIndexer.getIndex(identity, this.size);
+            return this.getEntry(idx);
         }
 
+        // entries with lastUpdated at or after timestamp, in lastUpdated order; the list is a read only view
+        // over the index built at load, so a call costs a binary search rather than a scan of all entries
         @Override
         public List<SaltEntry> getModifiedSince(Instant timestamp) {
             final long timestampMillis = timestamp.toEpochMilli();
-            return Arrays.stream(this.entries).filter(e -> e.getLastUpdated() >= timestampMillis).collect(Collectors.toList());
+            final ModifiedSince cached = this.lastModifiedSince;
+            if (cached != null && cached.timestampMillis == timestampMillis) return cached.entries;
+
+            final List<SaltEntry> entries = new ModifiedSinceView(this.lastUpdatedIndex.firstAtOrAfter(timestampMillis));
+            this.lastModifiedSince = new ModifiedSince(timestampMillis, entries);
+            return entries;
+        }
+
+        private class ModifiedSinceView extends AbstractList<SaltEntry> implements RandomAccess {
+            private final int from;
+
+            ModifiedSinceView(int from) {
+                this.from = from;
+            }
+
+            @Override
+            public SaltEntry get(int index) {
+                Objects.checkIndex(index, this.size());
+                return getEntry(lastUpdatedIndex.positionAt(this.from + index));
+            }
+
+            @Override
+            public int size() {
+                return lastUpdatedIndex.size() - this.from;
+            }
+        }
+
+        private static final class ModifiedSince {
+            private final long timestampMillis;
+            private final List<SaltEntry> entries;
+
+            ModifiedSince(long timestampMillis, List<SaltEntry> entries) {
+                this.timestampMillis = timestampMillis;
+                this.entries = entries;
+            }
+        }
+    }
+
+    // a snapshot served straight from a mapped binary salt file, an entry is created on its first lookup and
+    // kept, so lookups only allocate until every salt in use has been seen once
+    public static class MappedSaltSnapshot extends SaltSnapshot {
+        private final BinarySaltFile file;
+        private final IdHashingScheme idHashingScheme;
+        // a benign race, like SaltEntry.getHashedId: entries are immutable, so concurrent lookups of a position
+        // that is not decoded yet may each store an equal entry and either one is fine to return
+        private final SaltEntry[] decoded;
+        private volatile boolean allDecoded = false;
+
+        MappedSaltSnapshot(Instant effective, Instant expires, BinarySaltFile file, IdHashingScheme idHashingScheme, String firstLevelSalt) {
+            super(effective, expires, null, file.size(), firstLevelSalt,
+                    SaltLastUpdatedIndex.build(file.size(), i -> true, file::getLastUpdated));
+            this.file = file;
+            this.idHashingScheme = idHashingScheme;
+            this.decoded = new SaltEntry[file.size()];
+        }
+
+        @Override
+        protected SaltEntry getEntry(int idx) {
+            SaltEntry entry = this.decoded[idx];
+            if (entry == null) {
+                entry = new SaltEntry(this.file.getId(idx), this.file.getLastUpdated(idx), this.file.getSalt(idx), this.idHashingScheme.encoder);
+                this.decoded[idx] = entry;
+            }
+            return entry;
+        }
+
+        // decodes the entries not looked up yet once, then returns the shared array like SaltSnapshot does
+        @Override
+        public SaltEntry[] getAllRotatingSalts() {
+            if (!this.allDecoded) {
+                for (int i = 0; i < this.decoded.length; ++i) {
+                    this.getEntry(i);
+                }
+                this.allDecoded = true;
+            }
+            return this.decoded;
         }
     }
 
     static final class IdHashingScheme {
         private final String prefix;
         private final Hashids hasher;
+        // shared by all entries hashed with this scheme, so lazy entries don't each capture a method reference
+        final LongFunction<String> encoder = this::encode;
 
         public IdHashingScheme(final String prefix, final String secret) {
             this.prefix = prefix;
@@ -227,10 +573,10 @@ public class RotatingSaltProvider implements ISaltProvider, IMetadataVersionedSt
             try {
                 final String[] fields = line.split(",");
                 final long id = Integer.parseInt(fields[0]);
-                final String hashedId = this.idHashingScheme.encode(id);
                 final long lastUpdated = Long.parseLong(fields[1]);
                 final String salt = fields[2];
-                return new SaltEntry(id, hashedId, lastUpdated, salt);
+                // hashed ids are only needed when listing modified salts, Hashids is too slow to run for every entry
+                return new SaltEntry(id, lastUpdated, salt, this.idHashingScheme.encoder);
             } catch (Exception e) {
                 throw new RuntimeException("Trouble parsing Salt Entry " + line, e);
             }
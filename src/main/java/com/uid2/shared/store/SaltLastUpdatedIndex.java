@@ -0,0 +1,85 @@
+package com.uid2.shared.store;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+
+// Positions of the salt entries of a snapshot sorted by lastUpdated (then by position), so that the entries
+// modified since a timestamp are a suffix of the order found by binary search.
+final class SaltLastUpdatedIndex {
+    private final int[] order;
+    private final long[] sortedLastUpdated;
+
+    private SaltLastUpdatedIndex(int[] order, long[] sortedLastUpdated) {
+        this.order = order;
+        this.sortedLastUpdated = sortedLastUpdated;
+    }
+
+    // indexes the positions in [0, size) for which present is true
+    static SaltLastUpdatedIndex build(int size, IntPredicate present, IntToLongFunction lastUpdated) {
+        int count = 0;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        final long[] values = new long[size];
+        for (int i = 0; i < size; ++i) {
+            if (!present.test(i)) continue;
+            values[i] = lastUpdated.applyAsLong(i);
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            ++count;
+        }
+
+        final int[] order = new int[count];
+        int k = 0;
+        for (int i = 0; i < size; ++i) {
+            if (present.test(i)) order[k++] = i;
+        }
+
+        final int positionBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size));
+        if (count > 0 && max - min >= 0 && max - min < (1L << (63 - positionBits))) {
+            // pack (lastUpdated - min, position) into longs, so a primitive sort gives the order; 2^20 salts
+            // leave 43 bits for the range of timestamps, which is centuries in milliseconds
+            final long[] packed = new long[count];
+            for (int j = 0; j < count; ++j) {
+                packed[j] = ((values[order[j]] - min) << positionBits) | order[j];
+            }
+            Arrays.sort(packed);
+            final long positionMask = (1L << positionBits) - 1;
+            for (int j = 0; j < count; ++j) {
+                order[j] = (int) (packed[j] & positionMask);
+            }
+        } else if (count > 0) {
+            final Integer[] boxed = Arrays.stream(order).boxed().toArray(Integer[]::new);
+            Arrays.sort(boxed, Comparator.<Integer>comparingLong(i -> values[i]).thenComparingInt(i -> i));
+            for (int j = 0; j < count; ++j) {
+                order[j] = boxed[j];
+            }
+        }
+
+        final long[] sortedLastUpdated = new long[count];
+        for (int j = 0; j < count; ++j) {
+            sortedLastUpdated[j] = values[order[j]];
+        }
+        return new SaltLastUpdatedIndex(order, sortedLastUpdated);
+    }
+
+    int size() {
+        return this.order.length;
+    }
+
+    // position of the entry at rank i in lastUpdated order
+    int positionAt(int i) {
+        return this.order[i];
+    }
+
+    // the first rank whose lastUpdated is at or after timestampMillis, size() if there is none
+    int firstAtOrAfter(long timestampMillis) {
+        int lo = 0, hi = this.sortedLastUpdated.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (this.sortedLastUpdated[mid] < timestampMillis) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -5,8 +5,6 @@ import com.uid2.shared.Utils;
 import com.uid2.shared.model.ClientSideKeypair;
 import com.uid2.shared.store.ClientSideKeypairStoreSnapshot;
 import com.uid2.shared.store.IClientSideKeypairStore;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 
 import java.io.Console;
 import java.io.IOException;
@@ -17,11 +15,9 @@ import java.util.*;
 public class ClientSideKeypairParser implements Parser<IClientSideKeypairStore.IClientSideKeypairStoreSnapshot> {
     @Override
     public ParsingResult<IClientSideKeypairStore.IClientSideKeypairStoreSnapshot> deserialize(InputStream inputStream) throws IOException {
-        JsonArray keypairsSpec = Utils.toJsonArray(inputStream);
         final HashMap<String, ClientSideKeypair> keypairMap = new HashMap<>();
         final HashMap<Integer, List<ClientSideKeypair>> siteKeypairMap = new HashMap<>();
-        for (int i = 0; i < keypairsSpec.size(); i++){
-            JsonObject pairSpec = keypairsSpec.getJsonObject(i);
+        int count = Utils.forEachJsonObject(inputStream, pairSpec -> {
             String subscriptionId = pairSpec.getString("subscription_id");
             int siteId = pairSpec.getInteger("site_id");
             String contact = pairSpec.getString("contact");
@@ -38,8 +34,8 @@ public class ClientSideKeypairParser implements Parser<IClientSideKeypairStore.I
             );
             keypairMap.put(subscriptionId, keypair);
             siteKeypairMap.computeIfAbsent(siteId, id -> new ArrayList<>()).add(keypair);
-        }
+        });
         ClientSideKeypairStoreSnapshot snapshot = new ClientSideKeypairStoreSnapshot(keypairMap, siteKeypairMap);
-        return new ParsingResult<>(snapshot, keypairsSpec.size());
+        return new ParsingResult<>(snapshot, count);
     }
 }
@@ -4,7 +4,6 @@ import com.uid2.shared.Utils;
 import com.uid2.shared.auth.AclSnapshot;
 import com.uid2.shared.auth.EncryptionKeyAcl;
 import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,15 +13,13 @@ import java.util.HashSet;
 public class KeyAclParser implements Parser<AclSnapshot> {
     @Override
     public ParsingResult<AclSnapshot> deserialize(InputStream inputStream) throws IOException {
-        final JsonArray aclsSpec = Utils.toJsonArray(inputStream);
         final HashMap<Integer, EncryptionKeyAcl> aclMap = new HashMap<>();
-        for(int i = 0; i < aclsSpec.size(); ++i) {
-            final JsonObject aclSpec = aclsSpec.getJsonObject(i);
+        final int count = Utils.forEachJsonObject(inputStream, aclSpec -> {
             final Integer siteId = aclSpec.getInteger("site_id");
             final JsonArray blacklistSpec = aclSpec.getJsonArray("blacklist");
             final JsonArray whitelistSpec = aclSpec.getJsonArray("whitelist");
             if(blacklistSpec == null && whitelistSpec == null) {
-                continue;
+                return;
             } else if (blacklistSpec != null && whitelistSpec != null) {
                 throw new IllegalStateException(String.format("Site %d has both blacklist and whitelist specified, this is not allowed"));
             }
@@ -34,8 +31,8 @@ public class KeyAclParser implements Parser<AclSnapshot> {
             }
 
             aclMap.put(siteId, new EncryptionKeyAcl(isWhitelist, accessList));
-        }
+        });
 
-        return new ParsingResult<>(new AclSnapshot(aclMap), aclsSpec.size());
+        return new ParsingResult<>(new AclSnapshot(aclMap), count);
     }
 }
@@ -4,8 +4,6 @@ import com.uid2.shared.Utils;
 import com.uid2.shared.model.KeysetKey;
 import com.uid2.shared.store.KeysetKeyStoreSnapshot;
 import com.uid2.shared.store.reader.RotatingKeysetKeyStore;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,11 +16,9 @@ import java.util.List;
 public class KeysetKeyParser implements Parser<KeysetKeyStoreSnapshot> {
     @Override
     public ParsingResult<KeysetKeyStoreSnapshot> deserialize(InputStream inputStream) throws IOException {
-        JsonArray keysSpec = Utils.toJsonArray(inputStream);
         final HashMap<Integer, KeysetKey> keyIdToKeysetKey = new HashMap<>();
         final HashMap<Integer, List<KeysetKey>> keysetIdToKeysetKeyList = new HashMap<>();
-        for (int i = 0; i < keysSpec.size(); i++) {
-            JsonObject keySpec = keysSpec.getJsonObject(i);
+        int count = Utils.forEachJsonObject(inputStream, keySpec -> {
             int keysetId = keySpec.getInteger("keyset_id");
             Instant created = Instant.ofEpochSecond(keySpec.getLong("created"));
             Instant activates = Instant.ofEpochSecond(keySpec.getLong("activates"));
@@ -34,8 +30,8 @@ public class KeysetKeyParser implements Parser<KeysetKeyStoreSnapshot> {
                     );
             keyIdToKeysetKey.put(keysetKey.getId(), keysetKey);
             keysetIdToKeysetKeyList.computeIfAbsent(keysetId, k -> new ArrayList<>()).add(keysetKey);
-        }
+        });
         KeysetKeyStoreSnapshot snapshot = new KeysetKeyStoreSnapshot(keyIdToKeysetKey, keysetIdToKeysetKeyList);
-        return new ParsingResult<>(snapshot, keysSpec.size());
+        return new ParsingResult<>(snapshot, count);
     }
 }
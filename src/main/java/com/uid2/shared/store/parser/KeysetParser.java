@@ -4,7 +4,6 @@ import com.uid2.shared.Utils;
 import com.uid2.shared.auth.Keyset;
 import com.uid2.shared.auth.KeysetSnapshot;
 import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,10 +14,8 @@ import java.util.HashSet;
 public class KeysetParser implements Parser<KeysetSnapshot> {
     @Override
     public ParsingResult<KeysetSnapshot> deserialize(InputStream inputStream) throws IOException {
-        final JsonArray keysetsSpec = Utils.toJsonArray(inputStream);
         final HashMap<Integer, Keyset> keysetMap = new HashMap<>();
-        for(int i = 0; i < keysetsSpec.size(); i++) {
-            final JsonObject keysetSpec = keysetsSpec.getJsonObject(i);
+        final int count = Utils.forEachJsonObject(inputStream, keysetSpec -> {
             final Integer keysetId = keysetSpec.getInteger("keyset_id");
             final Integer siteId = keysetSpec.getInteger("site_id");
             final String name = keysetSpec.getString("name");
@@ -38,7 +35,7 @@ public class KeysetParser implements Parser<KeysetSnapshot> {
             final boolean isDefault = keysetSpec.getBoolean("default");
 
             keysetMap.put(keysetId, new Keyset(keysetId, siteId, name, allowedSites, created, enabled, isDefault));
-        }
-        return new ParsingResult<>(new KeysetSnapshot(keysetMap), keysetsSpec.size());
+        });
+        return new ParsingResult<>(new KeysetSnapshot(keysetMap), count);
     }
 }
@@ -15,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -373,8 +374,14 @@ public class CloudSyncVerticle extends AbstractVerticle {
     private void cloudDownloadBlocking(Promise<Void> promise, String s3Path) {
         try {
             String localPath = this.cloudSync.toLocalPath(s3Path);
-            try (InputStream cloudInput = this.cloudStorage.download(s3Path)) {
-                this.localStorage.upload(cloudInput, localPath);
+            Path target = this.localStorage.toFilePath(localPath);
+            if (target != null) {
+                // write straight into the local file, which is replaced atomically once fully downloaded
+                this.cloudStorage.downloadTo(s3Path, target);
+            } else {
+                try (InputStream cloudInput = this.cloudStorage.download(s3Path)) {
+                    this.localStorage.upload(cloudInput, localPath);
+                }
             }
             promise.complete();
         } catch (Exception ex) {
@@ -1,7 +1,17 @@
 package com.uid2.shared;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -56,4 +66,50 @@ public class UtilsTest {
         List<Integer> list = Arrays.asList(3, 4, 5, 5, 5, 6, 7, 8);
         Assert.assertEquals(5, Utils.upperBound(list, 5, (value, item) -> value < item));
     }
+
+    @Test public void forEachJsonObject_MatchesTreeDecode() throws IOException {
+        String json = "[{\"id\":1,\"created\":1700000000000,\"name\":\"a\",\"roles\":[\"GENERATOR\"],\"nested\":{\"x\":true}},"
+                + "{\"id\":2,\"created\":1,\"name\":null,\"roles\":[]}]";
+        List<JsonObject> streamed = new ArrayList<>();
+        int count = Utils.forEachJsonObject(toStream(json), streamed::add);
+
+        JsonArray decoded = Utils.toJsonArray(toStream(json));
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(decoded.getList().size(), streamed.size());
+        for (int i = 0; i < streamed.size(); ++i) {
+            Assert.assertEquals(decoded.getJsonObject(i), streamed.get(i));
+        }
+        Assert.assertEquals(1700000000000L, (long) streamed.get(0).getLong("created"));
+        Assert.assertEquals("GENERATOR", streamed.get(0).getJsonArray("roles").getString(0));
+        Assert.assertTrue(streamed.get(0).getJsonObject("nested").getBoolean("x"));
+    }
+
+    @Test public void forEachJsonObject_EmptyArray() throws IOException {
+        Assert.assertEquals(0, Utils.forEachJsonObject(toStream(" [ ] "), o -> Assert.fail()));
+    }
+
+    @Test public void forEachJsonObject_LeavesStreamOpen() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream stream = new FilterInputStream(toStream("[{}]x")) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+        Assert.assertEquals(1, Utils.forEachJsonObject(stream, o -> {}));
+        Assert.assertFalse(closed.get());
+    }
+
+    @Test(expected = IOException.class) public void forEachJsonObject_NotAnArray() throws IOException {
+        Utils.forEachJsonObject(toStream("{\"id\":1}"), o -> {});
+    }
+
+    @Test(expected = IOException.class) public void forEachJsonObject_NotAnArrayOfObjects() throws IOException {
+        Utils.forEachJsonObject(toStream("[{\"id\":1}, 2]"), o -> {});
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
 }
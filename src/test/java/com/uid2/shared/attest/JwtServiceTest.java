@@ -20,6 +20,8 @@ import software.amazon.awssdk.services.kms.model.GetPublicKeyRequest;
 import software.amazon.awssdk.services.kms.model.GetPublicKeyResponse;
 
 import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -154,4 +156,53 @@ public class JwtServiceTest {
         JwtService service = new JwtService(config);
         var ex = assertThrows(JwtService.ValidationException.class, () -> service.validateJwt(VALID_TOKEN, AUDIENCE, ISSUER));
         assertEquals("Unable to get public keys. Validation can not continue", ex.getMessage());
-    }}
+    }
+
+    @Test
+    void cachedValidationReturnsNewResponseEachTime() throws JwtService.ValidationException {
+        this.addPublicKeysToConfig(PUBLIC_KEY_STRING);
+        JwtService service = new JwtService(config);
+
+        var first = service.validateJwt(VALID_TOKEN, AUDIENCE, ISSUER);
+        assertTrue(first.getIsValid());
+        first.setIsValid(false);
+        first.setValidationException(new Exception("changed by caller"));
+
+        var second = service.validateJwt(VALID_TOKEN, AUDIENCE, ISSUER);
+        assertNotSame(first, second);
+        assertTrue(second.getIsValid());
+        assertNull(second.getValidationException());
+        assertEquals(999, second.getSiteId());
+        assertEquals(AUDIENCE, second.getAudience());
+    }
+
+    @Test
+    void cachedValidationIsNotSharedAcrossAudiences() throws JwtService.ValidationException {
+        this.addPublicKeysToConfig(PUBLIC_KEY_STRING);
+        JwtService service = new JwtService(config);
+
+        assertTrue(service.validateJwt(VALID_TOKEN, AUDIENCE, ISSUER).getIsValid());
+        assertFalse(service.validateJwt(VALID_TOKEN, "https://other.uidapi.com", ISSUER).getIsValid());
+    }
+
+    @Test
+    void cachedValidationExpiresWithToken() throws JwtService.ValidationException {
+        this.addPublicKeysToConfig(PUBLIC_KEY_STRING);
+        final Clock clock = mock(Clock.class);
+        final Instant now = Instant.now();
+        when(clock.instant()).thenReturn(now);
+        when(clock.millis()).thenReturn(now.toEpochMilli());
+        JwtService service = new JwtService(config, clock, 10);
+
+        assertTrue(service.validateJwt(VALID_TOKEN, AUDIENCE, ISSUER).getIsValid());
+
+        // VALID_TOKEN expires at 7258118400
+        final Instant afterExpiry = Instant.ofEpochSecond(7258118400L).plus(1, ChronoUnit.DAYS);
+        when(clock.instant()).thenReturn(afterExpiry);
+        when(clock.millis()).thenReturn(afterExpiry.toEpochMilli());
+
+        var validationResponse = service.validateJwt(VALID_TOKEN, AUDIENCE, ISSUER);
+        assertFalse(validationResponse.getIsValid());
+        assertEquals("Token is expired", validationResponse.getValidationException().getMessage());
+    }
+}
@@ -9,12 +9,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 
 import static org.mockito.Mockito.*;
 
@@ -41,7 +44,7 @@ public class UidCoreClientTest {
     public void Download_Succeed_RequestSentWithExpectedParameters() throws IOException, CloudStorageException, InterruptedException {
         ArgumentCaptor<HttpRequest> capturedRequest = ArgumentCaptor.forClass(HttpRequest.class);
 
-        HttpResponse<String> mockHttpResponse = mock(HttpResponse.class);
+        HttpResponse<InputStream> mockHttpResponse = mock(HttpResponse.class);
 
         when(mockAttestationTokenRetriever.getAttestationToken()).thenReturn("testAttestationToken");
         when(mockAttestationTokenRetriever.getCoreJWT()).thenReturn("testCoreJWT");
@@ -49,7 +52,7 @@ public class UidCoreClientTest {
         uidCoreClient.setUserToken("testUserToken");
 
         String expectedResponseBody = "Hello, world!";
-        when(mockHttpResponse.body()).thenReturn(expectedResponseBody);
+        when(mockHttpResponse.body()).thenReturn(toStream(expectedResponseBody));
 
         when(mockHttpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(mockHttpResponse);
 
@@ -62,7 +65,9 @@ public class UidCoreClientTest {
                 .setHeader("Attestation-JWT", "testCoreJWT")
                 .build();
 
-        uidCoreClient.download("https://download");
+        try (InputStream body = uidCoreClient.download("https://download")) {
+            Assertions.assertEquals(expectedResponseBody, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
 
         verify(mockHttpClient).send(capturedRequest.capture(), any(HttpResponse.BodyHandler.class));
         Assertions.assertEquals(expectedHttpRequest.method(), capturedRequest.getValue().method());
@@ -96,11 +101,11 @@ public class UidCoreClientTest {
 
     @Test
     public void Download_Attest401_AttestCalledTwice() throws CloudStorageException, IOException, InterruptedException, AttestationTokenRetrieverException {
-        HttpResponse<String> mockHttpResponse = mock(HttpResponse.class);
+        HttpResponse<InputStream> mockHttpResponse = mock(HttpResponse.class);
         when(mockHttpResponse.statusCode()).thenReturn(401);
 
         String expectedResponseBody = "Hello, world!";
-        when(mockHttpResponse.body()).thenReturn(expectedResponseBody);
+        when(mockHttpResponse.body()).thenReturn(toStream(expectedResponseBody));
 
         when(mockHttpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(mockHttpResponse);
 
@@ -108,10 +113,36 @@ public class UidCoreClientTest {
         verify(mockAttestationTokenRetriever, times(2)).attest();
     }
 
+    @Test
+    public void Download_Attest401_RetriedResponseReturned() throws CloudStorageException, IOException, InterruptedException {
+        InputStream unauthorizedBody = spy(toStream("unauthorized"));
+        HttpResponse<InputStream> unauthorizedResponse = mock(HttpResponse.class);
+        when(unauthorizedResponse.statusCode()).thenReturn(401);
+        when(unauthorizedResponse.body()).thenReturn(unauthorizedBody);
+
+        HttpResponse<InputStream> okResponse = mock(HttpResponse.class);
+        when(okResponse.statusCode()).thenReturn(200);
+        when(okResponse.body()).thenReturn(toStream("Hello, world!"));
+
+        when(mockHttpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(unauthorizedResponse)
+                .thenReturn(okResponse);
+
+        try (InputStream body = uidCoreClient.download("https://download")) {
+            Assertions.assertEquals("Hello, world!", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        verify(unauthorizedBody).close();
+        verify(mockHttpClient, times(2)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
     @Test
     void getJwtReturnsCoreToken() {
         when(mockAttestationTokenRetriever.getOptOutJWT()).thenReturn("optOutJWT");
         when(mockAttestationTokenRetriever.getCoreJWT()).thenReturn("coreJWT");
         Assertions.assertEquals("coreJWT", this.uidCoreClient.getJWT());
     }
+
+    private static InputStream toStream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
 }
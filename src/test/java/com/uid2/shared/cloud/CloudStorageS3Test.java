@@ -0,0 +1,251 @@
+package com.uid2.shared.cloud;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CloudStorageS3Test {
+    private static final String BUCKET = "bucket";
+    private final AmazonS3 s3 = mock(AmazonS3.class);
+
+    @Test
+    public void listPagesThroughContinuationTokens() throws Exception {
+        mockListing(Map.of("a/", pagesOf("a/", 5, 2)), null);
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+
+        assertEquals(Arrays.asList("a/0", "a/1", "a/2", "a/3", "a/4"), storage.list("a/"));
+    }
+
+    @Test
+    public void listPassesStartAfter() throws Exception {
+        List<String> startAfter = new ArrayList<>();
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request req = invocation.getArgument(0);
+            startAfter.add(req.getStartAfter());
+            return page(Collections.emptyList(), null);
+        });
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+
+        storage.list("a/", "a/2024-01-01/");
+        storage.list("a/");
+        assertEquals(Arrays.asList("a/2024-01-01/", null), startAfter);
+    }
+
+    @Test
+    public void listAllListsPrefixesConcurrently() throws Exception {
+        // every listing blocks until all three prefixes are being listed at the same time
+        CountDownLatch allStarted = new CountDownLatch(3);
+        mockListing(Map.of(
+            "a/", pagesOf("a/", 3, 2),
+            "b/", pagesOf("b/", 4, 2),
+            "c/", pagesOf("c/", 1, 2)), allStarted);
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+
+        List<List<String>> pages = new ArrayList<>();
+        storage.listAll(Arrays.asList("a/", "b/", "c/"), pages::add);
+
+        assertEquals(0, allStarted.getCount());
+        assertEquals(5, pages.size());
+        Set<String> keys = new HashSet<>();
+        pages.forEach(keys::addAll);
+        assertEquals(Set.of("a/0", "a/1", "a/2", "b/0", "b/1", "b/2", "b/3", "c/0"), keys);
+    }
+
+    @Test
+    public void listAllUsesBoundedConcurrency() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            active.decrementAndGet();
+            ListObjectsV2Request req = invocation.getArgument(0);
+            return page(Collections.singletonList(req.getPrefix() + "0"), null);
+        });
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+        storage.setListConcurrency(2);
+
+        List<String> prefixes = Arrays.asList("a/", "b/", "c/", "d/", "e/", "f/");
+        assertEquals(6, storage.listAll(prefixes).size());
+        assertTrue(maxActive.get() <= 2);
+    }
+
+    @Test
+    public void listAllFailsWhenAnyPrefixFails() {
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request req = invocation.getArgument(0);
+            if (req.getPrefix().equals("b/")) throw new IllegalStateException("denied");
+            return page(Collections.singletonList(req.getPrefix() + "0"), null);
+        });
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+
+        CloudStorageException e = assertThrows(CloudStorageException.class, () -> storage.listAll(Arrays.asList("a/", "b/")));
+        assertTrue(e.getMessage().contains("denied"));
+    }
+
+    @Test
+    public void downloadSmallObjectWithSingleRequest(@TempDir Path dir) throws Exception {
+        byte[] content = randomBytes(1000);
+        List<GetObjectRequest> requests = mockObject(content, "etag-1");
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+        storage.setRangedDownload(4096, 1024, 4);
+
+        Path target = dir.resolve("small.dat");
+        storage.downloadTo("small.dat", target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void downloadBelowThresholdFetchesRestInOneRange(@TempDir Path dir) throws Exception {
+        byte[] content = randomBytes(3000);
+        List<GetObjectRequest> requests = mockObject(content, "etag-1");
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+        storage.setRangedDownload(4096, 1024, 4);
+
+        Path target = dir.resolve("medium.dat");
+        storage.downloadTo("medium.dat", target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(2, requests.size());
+        assertArrayEquals(new long[]{1024, 2999}, requests.get(1).getRange());
+    }
+
+    @Test
+    public void downloadLargeObjectInParallelRanges(@TempDir Path dir) throws Exception {
+        byte[] content = randomBytes(10000);
+        List<GetObjectRequest> requests = mockObject(content, "etag-1");
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+        storage.setRangedDownload(4096, 1024, 4);
+
+        Path target = dir.resolve("large.dat");
+        storage.downloadTo("large.dat", target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // 10 chunks of 1024 bytes, all but the first constrained to the ETag of the first
+        assertEquals(10, requests.size());
+        assertEquals(9, requests.stream().filter(r -> r.getMatchingETagConstraints().contains("etag-1")).count());
+    }
+
+    @Test
+    public void downloadFailsWhenObjectChanges(@TempDir Path dir) throws Exception {
+        byte[] content = randomBytes(10000);
+        mockObject(content, "etag-1");
+        // the object is replaced after the first range
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest req = invocation.getArgument(0);
+            return req.getMatchingETagConstraints().isEmpty() ? range(content, req.getRange(), "etag-1") : null;
+        });
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+        storage.setRangedDownload(4096, 1024, 4);
+
+        Path target = dir.resolve("changed.dat");
+        byte[] previous = randomBytes(10);
+        Files.write(target, previous);
+        assertThrows(CloudStorageException.class, () -> storage.downloadTo("changed.dat", target));
+        // the previous file is untouched and no temporary file is left behind
+        assertArrayEquals(previous, Files.readAllBytes(target));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void downloadEmptyObject(@TempDir Path dir) throws Exception {
+        AmazonS3Exception invalidRange = new AmazonS3Exception("invalid range");
+        invalidRange.setStatusCode(416);
+        when(s3.getObject(any(GetObjectRequest.class))).thenThrow(invalidRange);
+        CloudStorageS3 storage = new CloudStorageS3(s3, BUCKET);
+
+        Path target = dir.resolve("empty.dat");
+        storage.downloadTo("empty.dat", target);
+        assertEquals(0, Files.size(target));
+    }
+
+    private List<GetObjectRequest> mockObject(byte[] content, String etag) {
+        List<GetObjectRequest> requests = Collections.synchronizedList(new ArrayList<>());
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest req = invocation.getArgument(0);
+            requests.add(req);
+            List<String> constraints = req.getMatchingETagConstraints();
+            if (!constraints.isEmpty() && !constraints.contains(etag)) return null;
+            return range(content, req.getRange(), etag);
+        });
+        return requests;
+    }
+
+    private static S3Object range(byte[] content, long[] range, String etag) {
+        int from = (int) range[0];
+        int to = (int) Math.min(range[1], content.length - 1);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setHeader(Headers.ETAG, etag);
+        metadata.setHeader(Headers.CONTENT_RANGE, "bytes " + from + "-" + to + "/" + content.length);
+        metadata.setContentLength(to - from + 1);
+        S3Object object = new S3Object();
+        object.setObjectMetadata(metadata);
+        object.setObjectContent(new ByteArrayInputStream(content, from, to - from + 1));
+        return object;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    // prefix -> pages, the continuation token of page i is its index
+    private void mockListing(Map<String, List<List<String>>> pagesByPrefix, CountDownLatch allStarted) {
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request req = invocation.getArgument(0);
+            List<List<String>> pages = pagesByPrefix.get(req.getPrefix());
+            int index = req.getContinuationToken() == null ? 0 : Integer.parseInt(req.getContinuationToken());
+            if (index == 0 && allStarted != null) {
+                allStarted.countDown();
+                assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+            }
+            return page(pages.get(index), index + 1 < pages.size() ? String.valueOf(index + 1) : null);
+        });
+    }
+
+    private static List<List<String>> pagesOf(String prefix, int keys, int pageSize) {
+        List<List<String>> pages = new ArrayList<>();
+        for (int i = 0; i < keys; i += pageSize) {
+            List<String> page = new ArrayList<>();
+            for (int j = i; j < Math.min(keys, i + pageSize); ++j) {
+                page.add(prefix + j);
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private static ListObjectsV2Result page(List<String> keys, String nextToken) {
+        ListObjectsV2Result result = new ListObjectsV2Result();
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName(BUCKET);
+            summary.setKey(key);
+            result.getObjectSummaries().add(summary);
+        }
+        result.setKeyCount(keys.size());
+        result.setTruncated(nextToken != null);
+        result.setNextContinuationToken(nextToken);
+        return result;
+    }
+}
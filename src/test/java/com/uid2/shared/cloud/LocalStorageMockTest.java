@@ -0,0 +1,87 @@
+package com.uid2.shared.cloud;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalStorageMockTest {
+    @Test
+    public void downloadToCopiesFile(@TempDir Path dir) throws Exception {
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(content);
+        Files.write(dir.resolve("source.dat"), content);
+
+        LocalStorageMock storage = new LocalStorageMock(dir.toString());
+        Path target = dir.resolve("nested/target.dat");
+        storage.downloadTo("source.dat", target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void downloadToReplacesExistingFile(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("source.txt"), "new");
+        Path target = dir.resolve("target.txt");
+        Files.writeString(target, "old and longer");
+
+        new LocalStorageMock(dir.toString()).downloadTo("source.txt", target);
+
+        assertEquals("new", Files.readString(target));
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void downloadToMissingFileKeepsTarget(@TempDir Path dir) throws Exception {
+        Path target = dir.resolve("target.txt");
+        Files.writeString(target, "old");
+
+        LocalStorageMock storage = new LocalStorageMock(dir.toString());
+        assertThrows(CloudStorageException.class, () -> storage.downloadTo("missing.txt", target));
+
+        assertEquals("old", Files.readString(target));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void listStartAfterRelativePath(@TempDir Path dir) throws Exception {
+        for (String day : new String[]{"2024-01-08", "2024-01-09", "2024-01-10"}) {
+            Files.createDirectories(dir.resolve("delta").resolve(day));
+            Files.writeString(dir.resolve("delta").resolve(day).resolve("file.dat"), day);
+        }
+
+        LocalStorageMock storage = new LocalStorageMock(dir.toString());
+        List<String> listed = storage.list("delta/", "delta/2024-01-09/");
+        Collections.sort(listed);
+
+        assertEquals(Arrays.asList(
+                dir.resolve("delta/2024-01-09/file.dat").toString(),
+                dir.resolve("delta/2024-01-10/file.dat").toString()), listed);
+        assertEquals(listed, storage.list("delta/", dir.resolve("delta/2024-01-09").toString()).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void defaultDownloadToStreamsIntoFile(@TempDir Path dir) throws Exception {
+        InMemoryStorageMock storage = new InMemoryStorageMock();
+        storage.upload(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)), "cloud/file.txt");
+
+        Path target = dir.resolve("file.txt");
+        storage.downloadTo("cloud/file.txt", target);
+
+        assertEquals("content", Files.readString(target));
+    }
+}
@@ -0,0 +1,48 @@
+package com.uid2.shared.cloud;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PathConversionWrapperTest {
+    @Test
+    public void listStartAfterIsForwardedToBackend() throws Exception {
+        InMemoryStorageMock backend = spy(new InMemoryStorageMock());
+        for (String day : new String[]{"2024-01-08", "2024-01-09", "2024-01-10"}) {
+            backend.upload(new ByteArrayInputStream(new byte[0]), "cloud/delta/" + day + "/file.dat");
+        }
+        PathConversionWrapper wrapper = new PathConversionWrapper(backend,
+            p -> p.substring("cloud/".length()),
+            p -> "cloud/" + p);
+
+        List<String> listed = wrapper.list("delta/", "delta/2024-01-09/");
+        Collections.sort(listed);
+
+        assertEquals(Arrays.asList("delta/2024-01-09/file.dat", "delta/2024-01-10/file.dat"), listed);
+        verify(backend).list("cloud/delta/", "cloud/delta/2024-01-09/");
+        verify(backend, never()).list(anyString());
+    }
+
+    @Test
+    public void listAllIsForwardedToBackend() throws Exception {
+        InMemoryStorageMock backend = spy(new InMemoryStorageMock());
+        backend.upload(new ByteArrayInputStream(new byte[0]), "cloud/partition/file.dat");
+        backend.upload(new ByteArrayInputStream(new byte[0]), "cloud/delta/file.dat");
+        PathConversionWrapper wrapper = new PathConversionWrapper(backend,
+            p -> p.substring("cloud/".length()),
+            p -> "cloud/" + p);
+
+        List<String> listed = wrapper.listAll(Arrays.asList("partition/", "delta/"));
+        Collections.sort(listed);
+
+        assertEquals(Arrays.asList("delta/file.dat", "partition/file.dat"), listed);
+        verify(backend).listAll(Arrays.asList("cloud/partition/", "cloud/delta/"));
+    }
+}
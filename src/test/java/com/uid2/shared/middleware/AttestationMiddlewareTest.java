@@ -18,6 +18,8 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Optional;
@@ -194,6 +196,79 @@ public class AttestationMiddlewareTest {
         verify(routingContext).fail(401);
     }
 
+    @Test
+    void notTrustedValidAttestationTokenIsCachedUntilExpiry() {
+        this.operatorKey = new OperatorKey("key", "name", "contact", "not-trusted", 1000, false, 999, null, OperatorType.PUBLIC);
+        this.data.put(AuthMiddleware.API_CLIENT_PROP, this.operatorKey);
+        when(this.request.getHeader(Const.Attestation.AttestationTokenHeader)).thenReturn("dummy attestation token");
+        when(this.request.getHeader(Const.Attestation.AttestationJWTHeader)).thenReturn(null);
+        when(this.request.getHeader("Authorization")).thenReturn("BEARER dummy");
+
+        final Instant now = Instant.now();
+        final Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(now);
+        when(this.attestationTokenService.reportsExpiry()).thenReturn(true);
+        when(this.attestationTokenService.validateTokenAndGetExpiry("dummy", "dummy attestation token")).thenReturn(now.plusSeconds(60));
+
+        var attestationMiddleware = new AttestationMiddleware(this.attestationTokenService, this.jwtService, this.jwtAudience, this.jwtIssuer, false, 10, clock);
+        var handler = attestationMiddleware.handle(nextHandler, Role.OPERATOR);
+        handler.handle(this.routingContext);
+        handler.handle(this.routingContext);
+
+        verify(nextHandler, times(2)).handle(routingContext);
+        verify(this.attestationTokenService, times(1)).validateTokenAndGetExpiry("dummy", "dummy attestation token");
+
+        // once the token expires, it has to be validated again
+        when(clock.instant()).thenReturn(now.plusSeconds(60));
+        when(this.attestationTokenService.validateTokenAndGetExpiry("dummy", "dummy attestation token")).thenReturn(null);
+        handler.handle(this.routingContext);
+
+        verify(this.attestationTokenService, times(2)).validateTokenAndGetExpiry("dummy", "dummy attestation token");
+        verify(nextHandler, times(2)).handle(routingContext);
+        verify(routingContext).fail(401);
+    }
+
+    @Test
+    void notTrustedCachedAttestationTokenRequiresSameUserToken() {
+        this.operatorKey = new OperatorKey("key", "name", "contact", "not-trusted", 1000, false, 999, null, OperatorType.PUBLIC);
+        this.data.put(AuthMiddleware.API_CLIENT_PROP, this.operatorKey);
+        when(this.request.getHeader(Const.Attestation.AttestationTokenHeader)).thenReturn("dummy attestation token");
+        when(this.request.getHeader(Const.Attestation.AttestationJWTHeader)).thenReturn(null);
+        when(this.request.getHeader("Authorization")).thenReturn("BEARER dummy");
+        when(this.attestationTokenService.reportsExpiry()).thenReturn(true);
+        when(this.attestationTokenService.validateTokenAndGetExpiry("dummy", "dummy attestation token")).thenReturn(Instant.now().plusSeconds(60));
+
+        var attestationMiddleware = getAttestationMiddleware(false);
+        var handler = attestationMiddleware.handle(nextHandler, Role.OPERATOR);
+        handler.handle(this.routingContext);
+
+        when(this.request.getHeader("Authorization")).thenReturn("BEARER other");
+        handler.handle(this.routingContext);
+
+        verify(nextHandler, times(1)).handle(routingContext);
+        verify(this.attestationTokenService).validateTokenAndGetExpiry("other", "dummy attestation token");
+        verify(routingContext).fail(401);
+    }
+
+    @Test
+    void notTrustedAttestationTokenWithoutKnownExpiryIsNotCached() {
+        this.operatorKey = new OperatorKey("key", "name", "contact", "not-trusted", 1000, false, 999, null, OperatorType.PUBLIC);
+        this.data.put(AuthMiddleware.API_CLIENT_PROP, this.operatorKey);
+        when(this.request.getHeader(Const.Attestation.AttestationTokenHeader)).thenReturn("dummy attestation token");
+        when(this.request.getHeader(Const.Attestation.AttestationJWTHeader)).thenReturn(null);
+        when(this.request.getHeader("Authorization")).thenReturn("BEARER dummy");
+        when(this.attestationTokenService.validateToken("dummy", "dummy attestation token")).thenReturn(true);
+
+        var attestationMiddleware = getAttestationMiddleware(false);
+        var handler = attestationMiddleware.handle(nextHandler, Role.OPERATOR);
+        handler.handle(this.routingContext);
+        handler.handle(this.routingContext);
+
+        verify(nextHandler, times(2)).handle(routingContext);
+        verify(this.attestationTokenService, times(2)).validateToken("dummy", "dummy attestation token");
+        verify(this.attestationTokenService, never()).validateTokenAndGetExpiry(any(), any());
+    }
+
     private AttestationMiddleware getAttestationMiddleware(boolean enforceJwt) {
         return new AttestationMiddleware(this.attestationTokenService, this.jwtService, this.jwtAudience, this.jwtIssuer, enforceJwt);
     }
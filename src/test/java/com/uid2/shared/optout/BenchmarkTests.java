@@ -0,0 +1,225 @@
+package com.uid2.shared.optout;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+public class BenchmarkTests extends TestCase {
+    // entries in the benchmark partition, override with -Doptout.benchmark.entries=10000000 for production sizes
+    private static final int PARTITION_ENTRIES = Integer.getInteger("optout.benchmark.entries", 1000000);
+    private static final int LOOKUPS = 1000000;
+    // entry counts for the sort benchmark, e.g. -Doptout.benchmark.sort.entries=1000000,10000000,50000000
+    // (50M entries is 3.6GB per copy, so the larger sizes need a correspondingly large heap)
+    private static final String SORT_ENTRIES = System.getProperty("optout.benchmark.sort.entries", "1000000");
+
+    public void testBenchmarkPartitionLookup() {
+        final OptOutPartition partition = newSortedPartition(PARTITION_ENTRIES);
+        final byte[][] hashes = newLookupHashes(partition, LOOKUPS);
+
+        long startByteWise = System.nanoTime();
+        int foundByteWise = 0;
+        for (byte[] hash : hashes) {
+            if (byteWiseBinarySearch(partition.getStore(), 0, partition.size(), hash) != -1) ++foundByteWise;
+        }
+        long endByteWise = System.nanoTime();
+
+        long startPartition = System.nanoTime();
+        int foundPartition = 0;
+        for (byte[] hash : hashes) {
+            if (partition.contains(hash)) ++foundPartition;
+        }
+        long endPartition = System.nanoTime();
+
+        assertEquals(foundByteWise, foundPartition);
+
+        System.out.println("Number of Entries in Partition = " + partition.size());
+        System.out.println("Byte-wise Recursive Lookup per Entry (ns) = " + (endByteWise - startByteWise) / (LOOKUPS * 1.0));
+        System.out.println("Partition Lookup per Entry (ns) = " + (endPartition - startPartition) / (LOOKUPS * 1.0));
+    }
+
+    public void testBenchmarkIndexedPartitionLookup() {
+        final OptOutPartition partition = newSortedPartition(PARTITION_ENTRIES);
+        final int indexBits = OptOutPartition.idealIndexBits(partition.size(), 20);
+        final OptOutPartition indexed = new OptOutPartition(partition.getStore(), indexBits);
+        final byte[][] hashes = newLookupHashes(partition, LOOKUPS);
+
+        long startPlain = System.nanoTime();
+        int foundPlain = 0;
+        for (byte[] hash : hashes) {
+            if (partition.contains(hash)) ++foundPlain;
+        }
+        long endPlain = System.nanoTime();
+
+        long startIndexed = System.nanoTime();
+        int foundIndexed = 0;
+        for (byte[] hash : hashes) {
+            if (indexed.contains(hash)) ++foundIndexed;
+        }
+        long endIndexed = System.nanoTime();
+
+        assertEquals(foundPlain, foundIndexed);
+
+        System.out.println("Number of Entries in Partition = " + partition.size());
+        System.out.println("Prefix Index Bits = " + indexBits + ", Index Memory (bytes) = " + 4L * ((1 << indexBits) + 1));
+        System.out.println("Unindexed Lookup per Entry (ns) = " + (endPlain - startPlain) / (LOOKUPS * 1.0));
+        System.out.println("Indexed Lookup per Entry (ns) = " + (endIndexed - startIndexed) / (LOOKUPS * 1.0));
+    }
+
+    public void testBenchmarkBloomFilters() {
+        final int entries = PARTITION_ENTRIES;
+        final OptOutPartition partition = newSortedPartition(entries);
+        final byte[][] hashes = newLookupHashes(partition, LOOKUPS);
+
+        final BloomFilter single = new BloomFilter(BloomFilter.idealCapacity(entries));
+        partition.set(single);
+        final BlockedBloomFilter blocked = new BlockedBloomFilter(entries, 0.01);
+        partition.set(blocked);
+
+        long startSingle = System.nanoTime();
+        int hitsSingle = 0;
+        for (byte[] hash : hashes) {
+            if (single.likelyContains(hash)) ++hitsSingle;
+        }
+        long endSingle = System.nanoTime();
+
+        long startBlocked = System.nanoTime();
+        int hitsBlocked = 0;
+        for (byte[] hash : hashes) {
+            if (blocked.likelyContains(hash)) ++hitsBlocked;
+        }
+        long endBlocked = System.nanoTime();
+
+        // half of the lookups are present, the rest measure false positives
+        final int absent = LOOKUPS / 2;
+        System.out.println("Number of Entries in Bloom Filters = " + entries);
+        System.out.println("Single-hash Memory (bytes) = " + single.capacity() / 8
+            + ", False Positive Rate = " + (hitsSingle - (LOOKUPS - absent)) / (absent * 1.0)
+            + ", Lookup per Entry (ns) = " + (endSingle - startSingle) / (LOOKUPS * 1.0));
+        System.out.println("Blocked k=" + blocked.hashFunctions() + " Memory (bytes) = " + blocked.sizeInBytes()
+            + ", False Positive Rate = " + (hitsBlocked - (LOOKUPS - absent)) / (absent * 1.0)
+            + ", Lookup per Entry (ns) = " + (endBlocked - startBlocked) / (LOOKUPS * 1.0));
+    }
+
+    public void testBenchmarkParallelToPartition() {
+        final byte[] store = new byte[PARTITION_ENTRIES * OptOutConst.EntrySize];
+        OptOutUtils.rand.nextBytes(store);
+        final OptOutHeap heap = new OptOutHeap(PARTITION_ENTRIES);
+        heap.add(new OptOutCollection(store));
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+
+        long startSequential = System.nanoTime();
+        final OptOutPartition sequential = heap.toPartition(true, 0, 1);
+        long endSequential = System.nanoTime();
+
+        long startParallel = System.nanoTime();
+        final OptOutPartition parallel = heap.toPartition(true, 0, parallelism);
+        long endParallel = System.nanoTime();
+
+        assertEquals(sequential.size(), parallel.size());
+
+        System.out.println("Number of Entries in Heap = " + heap.size());
+        System.out.println("Sequential toPartition (ms) = " + (endSequential - startSequential) / 1000000.0);
+        System.out.println("Parallel (" + parallelism + ") toPartition (ms) = " + (endParallel - startParallel) / 1000000.0);
+    }
+
+    public void testBenchmarkRadixSort() {
+        for (String size : SORT_ENTRIES.split(",")) {
+            final int entries = Integer.parseInt(size.trim());
+            final byte[] store = new byte[entries * OptOutConst.EntrySize];
+            OptOutUtils.rand.nextBytes(store);
+
+            long startHeap = System.nanoTime();
+            final byte[] heapSorted = store.clone();
+            OptOutHeap.sortRange(heapSorted, 0, entries, new byte[OptOutConst.EntrySize]);
+            long endHeap = System.nanoTime();
+
+            long startRadix = System.nanoTime();
+            final byte[] radixSorted = new byte[store.length];
+            RadixEntrySorter.sort(store, 0, entries, radixSorted);
+            long endRadix = System.nanoTime();
+
+            assertTrue(Arrays.equals(heapSorted, radixSorted));
+
+            System.out.println("Number of Entries to Sort = " + entries);
+            System.out.println("Heap Sort (ms) = " + (endHeap - startHeap) / 1000000.0);
+            System.out.println("Radix Sort (ms) = " + (endRadix - startRadix) / 1000000.0);
+        }
+    }
+
+    public void testBenchmarkTimestampAllocations() {
+        // -prof gc style check without JMH: per-thread allocated bytes around the timestamp encode/decode loop
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final byte[] store = new byte[1000 * OptOutConst.EntrySize];
+        OptOutUtils.rand.nextBytes(store);
+        final OptOutEntry entry = OptOutEntry.newRandom();
+        final int iterations = 10000000;
+
+        // warm up, so that no allocations from class loading or compilation are counted
+        long checksum = timestampLoop(store, entry, iterations);
+
+        final long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        checksum += timestampLoop(store, entry, iterations);
+        long end = System.nanoTime();
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+        System.out.println("Timestamp Encode/Decode per Iteration (ns) = " + (end - start) / (iterations * 1.0) + ", checksum " + checksum);
+        System.out.println("Allocated Bytes per Iteration = " + allocated / (iterations * 1.0));
+        // a single allocation per iteration would be >= 16 bytes each, 160MB in total
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024 * 1024);
+    }
+
+    private static long timestampLoop(byte[] store, OptOutEntry entry, int iterations) {
+        final int entries = store.length / OptOutConst.EntrySize;
+        long checksum = 0;
+        for (int i = 0; i < iterations; ++i) {
+            final int offset = (i % entries) * OptOutConst.EntrySize;
+            final long ts = OptOutEntry.parseTimestamp(store, offset);
+            OptOutEntry.setTimestamp(store, offset, ts + 1);
+            if ((i & 0xFF) == 0) entry.copyToByteArray(store, offset);
+            checksum += ts + OptOutUtils.toInt(store, offset) + OptOutUtils.toLong(store, offset);
+        }
+        return checksum;
+    }
+
+    // builds a sorted partition directly, using the top 8 bytes of the identity hash as evenly spread sorted keys
+    static OptOutPartition newSortedPartition(int entries) {
+        final byte[] store = new byte[entries * OptOutConst.EntrySize];
+        OptOutUtils.rand.nextBytes(store);
+        final long step = Long.divideUnsigned(-1L, entries);
+        for (int i = 0; i < entries; ++i) {
+            final int offset = i * OptOutConst.EntrySize;
+            System.arraycopy(OptOutUtils.toByteArrayBE(step * i), 0, store, offset, Long.BYTES);
+            store[offset + OptOutConst.EntrySize - 1] = 0;
+        }
+        return new OptOutPartition(store);
+    }
+
+    // half of the hashes are present in the partition, the other half are random
+    static byte[][] newLookupHashes(OptOutCollection collection, int count) {
+        final byte[][] hashes = new byte[count][];
+        for (int i = 0; i < count; ++i) {
+            if (i % 2 == 0) {
+                hashes[i] = collection.get(OptOutUtils.rand.nextInt(collection.size())).identityHash;
+            } else {
+                hashes[i] = new byte[OptOutConst.Sha256Bytes];
+                OptOutUtils.rand.nextBytes(hashes[i]);
+            }
+        }
+        return hashes;
+    }
+
+    // the recursive byte by byte search OptOutPartition used to do, kept as the baseline
+    private static int byteWiseBinarySearch(byte[] store, int left, int right, byte[] identityHash) {
+        if (right > left) {
+            int mid = left + (right - 1 - left) / 2;
+            int cmp = OptOutUtils.compareByteRange(store, mid * OptOutConst.EntrySize, identityHash, 0, OptOutConst.Sha256Bytes);
+            if (cmp == 0) return mid;
+            if (cmp > 0) return byteWiseBinarySearch(store, left, mid, identityHash);
+            return byteWiseBinarySearch(store, mid + 1, right, identityHash);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,92 @@
+package com.uid2.shared.optout;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlockedBloomFilterTest {
+    @Test(expected = AssertionError.class)
+    public void createZeroSize_expectFail() {
+        new BlockedBloomFilter(0, 0.01);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void createInvalidFpr_expectFail() {
+        new BlockedBloomFilter(100, 1.0);
+    }
+
+    @Test
+    public void sizing_tests() {
+        BlockedBloomFilter bf = new BlockedBloomFilter(1, 0.01);
+        assertEquals(512, bf.capacity());
+        assertEquals(7, bf.hashFunctions());
+
+        // ~9.6 bits per entry for 1%, rounded up to a power of two number of blocks
+        bf = new BlockedBloomFilter(1000000, 0.01);
+        assertEquals(1L << 24, bf.capacity());
+        assertEquals(1L << 21, bf.sizeInBytes());
+
+        bf = new BlockedBloomFilter(1000, 1e-9);
+        assertEquals(16, bf.hashFunctions());
+    }
+
+    @Test
+    public void createOne_expectNotContainForEmpty() {
+        BlockedBloomFilter bf = new BlockedBloomFilter(1, 0.01);
+        for (int i = 0; i < 100; ++i) {
+            assertFalse(bf.likelyContains(OptOutEntry.newRandom().identityHash));
+        }
+    }
+
+    @Test
+    public void addManyTimes_verifyReturnValue() {
+        BlockedBloomFilter bf = new BlockedBloomFilter(100, 0.01);
+        byte[] hash = OptOutEntry.newRandom().identityHash;
+        assertTrue(bf.add(hash));
+        assertFalse(bf.add(hash));
+        assertFalse(bf.add(hash));
+        assertEquals(1, bf.size());
+
+        bf.reset();
+        assertEquals(0, bf.size());
+        assertFalse(bf.likelyContains(hash));
+    }
+
+    @Test
+    public void addFromCollection_noFalseNegatives() {
+        OptOutEntry[] entries = new OptOutEntry[10000];
+        for (int i = 0; i < entries.length; ++i) {
+            entries[i] = OptOutEntry.newRandom();
+        }
+        OptOutCollection collection = new OptOutCollection(entries);
+        BlockedBloomFilter bf = new BlockedBloomFilter(entries.length, 0.01);
+        collection.set(bf);
+
+        for (OptOutEntry entry : entries) {
+            assertTrue(bf.likelyContains(entry.identityHash));
+        }
+        for (int i = 0; i < collection.size(); ++i) {
+            assertTrue(bf.likelyContains(collection.getStore(), i * OptOutConst.EntrySize));
+        }
+    }
+
+    @Test
+    public void falsePositiveRate_closeToTarget() {
+        final int entries = 100000;
+        final double fpr = 0.01;
+        BlockedBloomFilter bf = new BlockedBloomFilter(entries, fpr);
+        for (int i = 0; i < entries; ++i) {
+            bf.add(OptOutEntry.newRandom().identityHash);
+        }
+
+        int falsePositives = 0;
+        final int probes = 100000;
+        for (int i = 0; i < probes; ++i) {
+            if (bf.likelyContains(OptOutEntry.newRandom().identityHash)) ++falsePositives;
+        }
+        assertTrue("false positive rate " + (double) falsePositives / probes, falsePositives < probes * fpr * 2);
+    }
+}
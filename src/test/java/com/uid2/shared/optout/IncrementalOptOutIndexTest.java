@@ -0,0 +1,169 @@
+package com.uid2.shared.optout;
+
+import com.uid2.shared.cloud.InMemoryStorageMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class IncrementalOptOutIndexTest {
+    private final InMemoryStorageMock storage = new InMemoryStorageMock();
+    private final List<Runnable> pendingCompactions = new ArrayList<>();
+    private final Executor manualExecutor = pendingCompactions::add;
+    private final Set<String> cachedPaths = new HashSet<>();
+
+    @Before
+    public void setup() {
+        storage.cloudFileSystemMock.clear();
+        pendingCompactions.clear();
+        cachedPaths.clear();
+    }
+
+    @Test
+    public void emptyIndex() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 100, 4);
+        assertEquals(0, index.snapshot().tierCount());
+        assertEquals(-1, index.snapshot().getOptOutTimestamp(hash(1)));
+    }
+
+    @Test
+    public void maxTimestampAcrossTiers() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 100, 4);
+        addPartition(entry(1, 100), entry(2, 200));
+        addDelta(entry(1, 300));
+        index.update(cachedPaths);
+
+        IncrementalOptOutIndex.Snapshot snapshot = index.snapshot();
+        assertEquals(2, snapshot.tierCount());
+        assertEquals(300, snapshot.getOptOutTimestamp(hash(1)));
+        assertEquals(200, snapshot.getOptOutTimestamp(hash(2)));
+        assertEquals(-1, snapshot.getOptOutTimestamp(hash(3)));
+        assertFalse(snapshot.contains(hash(3)));
+    }
+
+    @Test
+    public void onlyNewFilesAreLoaded() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 100, 4);
+        addDelta(entry(1, 100));
+        index.update(cachedPaths);
+
+        // loaded files are not read again
+        String second = addDelta(entry(2, 200));
+        storage.cloudFileSystemMock.keySet().removeIf(f -> !f.equals(second));
+        index.update(cachedPaths);
+
+        IncrementalOptOutIndex.Snapshot snapshot = index.snapshot();
+        assertEquals(100, snapshot.getOptOutTimestamp(hash(1)));
+        assertEquals(200, snapshot.getOptOutTimestamp(hash(2)));
+        assertEquals(2, snapshot.files().size());
+    }
+
+    @Test
+    public void snapshotIsImmutable() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 100, 4);
+        addDelta(entry(1, 100));
+        index.update(cachedPaths);
+        IncrementalOptOutIndex.Snapshot before = index.snapshot();
+
+        addDelta(entry(2, 200));
+        index.update(cachedPaths);
+
+        assertEquals(-1, before.getOptOutTimestamp(hash(2)));
+        assertEquals(200, index.snapshot().getOptOutTimestamp(hash(2)));
+    }
+
+    @Test
+    public void deltaTierFreezesAndCompacts() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 2, 2);
+        for (int i = 0; i < 4; ++i) {
+            addDelta(entry(10 + i, 100 + i), entry(20 + i, 100 + i));
+            index.update(cachedPaths);
+        }
+        assertEquals(4, index.snapshot().tierCount());
+        assertEquals(1, pendingCompactions.size());
+
+        // a compaction started while tiers were still being added schedules another one when done
+        while (!pendingCompactions.isEmpty()) {
+            pendingCompactions.remove(0).run();
+        }
+        IncrementalOptOutIndex.Snapshot snapshot = index.snapshot();
+        assertEquals(2, snapshot.tierCount());
+        assertEquals(8, snapshot.size());
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(100 + i, snapshot.getOptOutTimestamp(hash(10 + i)));
+            assertEquals(100 + i, snapshot.getOptOutTimestamp(hash(20 + i)));
+        }
+    }
+
+    @Test
+    public void removedFileIsDroppedFromCompactedTier() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 1, 2);
+        String first = addDelta(entry(1, 100));
+        addDelta(entry(2, 200));
+        addDelta(entry(3, 300));
+        index.update(cachedPaths);
+        pendingCompactions.remove(0).run();
+        assertEquals(2, index.snapshot().tierCount());
+
+        cachedPaths.remove(first);
+        index.update(cachedPaths);
+
+        IncrementalOptOutIndex.Snapshot snapshot = index.snapshot();
+        assertEquals(-1, snapshot.getOptOutTimestamp(hash(1)));
+        assertEquals(200, snapshot.getOptOutTimestamp(hash(2)));
+        assertEquals(300, snapshot.getOptOutTimestamp(hash(3)));
+        assertFalse(snapshot.files().contains(first));
+    }
+
+    @Test
+    public void staleCompactionIsDiscarded() {
+        IncrementalOptOutIndex index = new IncrementalOptOutIndex(storage, manualExecutor, 1, 2);
+        // the smallest tiers are compacted, which includes the first one
+        String first = addPartition(entry(1, 100));
+        addPartition(entry(2, 200), entry(4, 200));
+        addPartition(entry(3, 300), entry(5, 300));
+        index.update(cachedPaths);
+        assertEquals(1, pendingCompactions.size());
+
+        // the compaction picked tiers that no longer exist once it finishes
+        cachedPaths.remove(first);
+        index.update(cachedPaths);
+        pendingCompactions.remove(0).run();
+
+        IncrementalOptOutIndex.Snapshot snapshot = index.snapshot();
+        assertEquals(2, snapshot.tierCount());
+        assertEquals(-1, snapshot.getOptOutTimestamp(hash(1)));
+        assertEquals(300, snapshot.getOptOutTimestamp(hash(3)));
+    }
+
+    private String addDelta(OptOutEntry... entries) {
+        return addFile(OptOutUtils.newDeltaFileName(0), entries);
+    }
+
+    private String addPartition(OptOutEntry... entries) {
+        OptOutHeap heap = new OptOutHeap(entries.length);
+        heap.add(entries);
+        return addFile(OptOutUtils.newPartitionFileName(0), heap.toPartition(true).getStore());
+    }
+
+    private String addFile(String name, OptOutEntry... entries) {
+        return addFile(name, new OptOutCollection(entries).getStore());
+    }
+
+    private String addFile(String name, byte[] data) {
+        storage.cloudFileSystemMock.put(name, data);
+        cachedPaths.add(name);
+        return name;
+    }
+
+    private static OptOutEntry entry(long id, long timestamp) {
+        return OptOutEntry.newTestEntry(id, timestamp);
+    }
+
+    private static byte[] hash(long id) {
+        return OptOutEntry.idHashFromLong(id);
+    }
+}
@@ -0,0 +1,67 @@
+package com.uid2.shared.optout;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class MappedOptOutPartitionTest {
+    @Test(expected = IOException.class)
+    public void openEmpty_expectFail() throws IOException {
+        Path file = Files.createTempFile(OptOutUtils.prefixPartitionFile, TestUtils.newSuffix());
+        MappedOptOutPartition.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void openPartialEntry_expectFail() throws IOException {
+        Path file = Files.createTempFile(OptOutUtils.prefixPartitionFile, TestUtils.newSuffix());
+        Files.write(file, new byte[OptOutConst.EntrySize + 1]);
+        MappedOptOutPartition.open(file);
+    }
+
+    @Test
+    public void matchesInMemoryPartition() throws IOException {
+        for (int entriesPerChunk : new int[]{1, 7, 64, MappedOptOutPartition.MAX_ENTRIES_PER_CHUNK}) {
+            verifyMatchesInMemoryPartition(entriesPerChunk);
+        }
+    }
+
+    private void verifyMatchesInMemoryPartition(int entriesPerChunk) throws IOException {
+        OptOutHeap heap = new OptOutHeap(1);
+        HashSet<OptOutEntry> entries = new HashSet<>();
+        for (int i = 0; i < 500; ++i) {
+            OptOutEntry entry = OptOutEntry.newRandom();
+            entries.add(entry);
+            heap.add(entry);
+        }
+        heap.add(OptOutEntry.newTestEntry(1, 1));
+        heap.add(OptOutEntry.newTestEntry(1, 5));
+
+        OptOutPartition partition = heap.toPartition(true);
+        Path file = Files.createTempFile(OptOutUtils.prefixPartitionFile, TestUtils.newSuffix());
+        Files.write(file, partition.getStore());
+
+        MappedOptOutPartition mapped = MappedOptOutPartition.open(file, entriesPerChunk);
+        assertEquals(partition.size(), mapped.size());
+
+        for (OptOutEntry entry : entries) {
+            assertTrue(mapped.contains(entry.identityHash));
+            assertEquals(entry.timestamp, mapped.getOptOutTimestamp(entry.identityHash));
+        }
+
+        byte[] hash1 = OptOutEntry.idHashFromLong(1);
+        assertEquals(5, mapped.getOptOutTimestamp(hash1));
+
+        for (int j = 0; j < 100; ++j) {
+            OptOutEntry testEntry = OptOutEntry.newRandom();
+            assertFalse(mapped.contains(testEntry.identityHash));
+            assertEquals(-1, mapped.getOptOutTimestamp(testEntry.identityHash));
+        }
+        assertFalse(mapped.contains(OptOutUtils.nullHashBytes));
+        assertFalse(mapped.contains(OptOutUtils.onesHashBytes));
+    }
+}
@@ -1,11 +1,137 @@
 package com.uid2.shared.optout;
 
+import com.uid2.shared.Const;
+import com.uid2.shared.cloud.CloudStorageException;
 import com.uid2.shared.cloud.CloudUtils;
+import com.uid2.shared.cloud.InMemoryStorageMock;
+import com.uid2.shared.cloud.LocalStorageMock;
+import io.vertx.core.json.JsonObject;
 import org.junit.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+
 import static org.junit.Assert.*;
 
 public class OptOutCloudSyncTest {
+    @Test
+    public void refresh_listsDeltasSinceLastListingUntilFullListingIsDue() throws Exception {
+        OptOutCloudSync sync = new OptOutCloudSync(newConfig(3600), false);
+        CountingStorageMock cloud = new CountingStorageMock();
+        LocalStorageMock local = new LocalStorageMock();
+        Instant now = Instant.parse("2024-01-10T12:00:00Z");
+
+        String partition = cloud.add(sync.toCloudPath(OptOutUtils.newPartitionFileName(Instant.parse("2024-01-09T00:00:00Z"))));
+        String beforeWindow = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-07T10:00:00Z"))));
+        String inWindow = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-08T10:00:00Z"))));
+        String today = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-10T11:00:00Z"))));
+
+        // first refresh lists the whole window from the day folder (last partition - backtrack days)
+        Set<String> downloads = refresh(sync, now, cloud, local);
+        assertEquals(new HashSet<>(Arrays.asList(partition, inWindow, today)), downloads);
+        assertEquals(Arrays.asList("optout/partition/", "optout/delta/"), cloud.listedPrefixes);
+        assertEquals(Arrays.asList(null, "optout/delta/2024-01-08/"), cloud.listedStartAfter);
+
+        // new deltas are found by listing from the day before the last listing, which includes a delta
+        // rotated before midnight and uploaded late, but not one for an older day
+        String newToday = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-10T12:00:00Z"))));
+        String late = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-09T23:59:00Z"))));
+        String older = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-08T11:00:00Z"))));
+        cloud.clearCounts();
+        downloads = refresh(sync, now.plusSeconds(60), cloud, local);
+        assertTrue(downloads.contains(newToday));
+        assertTrue(downloads.contains(late));
+        assertFalse(downloads.contains(older));
+        assertFalse(downloads.contains(beforeWindow));
+        assertEquals(Arrays.asList(null, "optout/delta/2024-01-09/"), cloud.listedStartAfter);
+
+        // the full window is listed again once the full listing interval passes
+        cloud.clearCounts();
+        downloads = refresh(sync, now.plusSeconds(3600), cloud, local);
+        assertTrue(downloads.contains(newToday));
+        assertTrue(downloads.contains(older));
+        assertEquals(Arrays.asList(null, "optout/delta/2024-01-08/"), cloud.listedStartAfter);
+    }
+
+    @Test
+    public void refresh_zeroFullListingIntervalListsWholeWindow() throws Exception {
+        OptOutCloudSync sync = new OptOutCloudSync(newConfig(0), false);
+        CountingStorageMock cloud = new CountingStorageMock();
+        LocalStorageMock local = new LocalStorageMock();
+        Instant now = Instant.parse("2024-01-10T12:00:00Z");
+
+        cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-01T10:00:00Z"))));
+        refresh(sync, now, cloud, local);
+        String late = cloud.add(sync.toCloudPath(OptOutUtils.newDeltaFileName(Instant.parse("2024-01-02T10:00:00Z"))));
+        cloud.clearCounts();
+
+        // without partitions, the whole delta root is listed
+        assertTrue(refresh(sync, now.plusSeconds(60), cloud, local).contains(late));
+        assertNull(cloud.listedStartAfter.get(1));
+    }
+
+    @Test
+    public void tempFilesAreNotCachedAndStaleOnesAreDeletedAtStartup() throws Exception {
+        JsonObject config = newConfig(3600);
+        Path deltaDir = Paths.get(OptOutUtils.getDeltaConsumerDir(config));
+        Files.createDirectories(deltaDir);
+        String deltaName = OptOutUtils.newDeltaFileName(Instant.parse("2024-01-10T11:00:00Z"));
+        Path stale = Files.createFile(deltaDir.resolve("." + deltaName + "123.tmp"));
+
+        OptOutCloudSync sync = new OptOutCloudSync(config, false);
+        assertFalse(Files.exists(stale));
+
+        // a download in progress is neither reported as cached nor deleted
+        Path inProgress = CloudUtils.createTempFileFor(deltaDir.resolve(deltaName));
+        Set<String> deletes = new HashSet<>();
+        sync.refresh(Instant.parse("2024-01-10T12:00:00Z"), new InMemoryStorageMock(), new LocalStorageMock(), downloads -> {}, deletes::addAll);
+        assertTrue(deletes.isEmpty());
+        assertTrue(Files.exists(inProgress));
+    }
+
+    private static Set<String> refresh(OptOutCloudSync sync, Instant now, InMemoryStorageMock cloud, LocalStorageMock local) throws CloudStorageException {
+        Set<String> downloads = new HashSet<>();
+        sync.refresh(now, cloud, local, downloads::addAll, deletes -> {});
+        return downloads;
+    }
+
+    private static JsonObject newConfig(int fullListingInterval) throws Exception {
+        return new JsonObject()
+            .put(Const.Config.OptOutS3FolderProp, "optout/")
+            .put(Const.Config.OptOutDataDirProp, Files.createTempDirectory("optout-sync-test").toString())
+            .put(Const.Config.OptOutDeltaBacktrackInDaysProp, 1)
+            .put(Const.Config.OptOutProducerMaxReplicasProp, 1)
+            .put(Const.Config.OptOutDeltaRotateIntervalProp, 300)
+            .put(Const.Config.OptOutPartitionIntervalProp, 86400)
+            .put(Const.Config.OptOutMaxPartitionsProp, 30)
+            .put(Const.Config.OptOutFullListingIntervalProp, fullListingInterval);
+    }
+
+    private static class CountingStorageMock extends InMemoryStorageMock {
+        private final List<String> listedPrefixes = new ArrayList<>();
+        private final List<String> listedStartAfter = new ArrayList<>();
+
+        String add(String cloudPath) {
+            cloudFileSystemMock.put(cloudPath, new byte[0]);
+            return cloudPath;
+        }
+
+        void clearCounts() {
+            listedPrefixes.clear();
+            listedStartAfter.clear();
+        }
+
+        @Override
+        public List<String> list(String prefix, String startAfter) throws CloudStorageException {
+            listedPrefixes.add(prefix);
+            listedStartAfter.add(startAfter);
+            return super.list(prefix, startAfter);
+        }
+    }
+
     /*
     private static final String s3folder = "s3_folder_test/upload";
     private static final String logDir = "local_test/log_dir";
@@ -166,4 +166,33 @@ public class OptOutEntryTest {
         Assert.assertArrayEquals(adsId, entry.advertisingId);
         Assert.assertEquals(0x56555453525150l, entry.timestamp);
     }
+
+    @Test
+    public void writeToLittleEndianByteBuffer()
+    {
+        final byte[] idHash = OptOutUtils.hexToByteArray("101112131415161718191a1b1c1d1e1f202122232425262728292a2b2c2d2e2f");
+        final byte[] adsId = OptOutUtils.hexToByteArray("04303132333435363738393a3b3c3d3e3f404142434445464748494a4b4c4d4e4f");
+        final long timestamp = 0x56555453525150l;
+
+        ByteBuffer buffer = ByteBuffer.allocate(OptOutConst.EntrySize).order(ByteOrder.LITTLE_ENDIAN);
+        OptOutEntry.writeTo(buffer, idHash, adsId, timestamp);
+
+        final byte[] expected = new byte[OptOutConst.EntrySize];
+        new OptOutEntry(idHash, adsId, timestamp).copyToByteArray(expected, 0);
+        Assert.assertArrayEquals(expected, buffer.array());
+    }
+
+    @Test
+    public void setTimestampKeepsMetadata() {
+        final byte[] idHash = OptOutUtils.hexToByteArray("101112131415161718191a1b1c1d1e1f202122232425262728292a2b2c2d2e2f");
+        final byte[] adsId = OptOutUtils.hexToByteArray("04303132333435363738393a3b3c3d3e3f404142434445464748494a4b4c4d4e4f");
+
+        final byte[] record = new byte[OptOutConst.EntrySize];
+        new OptOutEntry(idHash, adsId, 0x56555453525150l).copyToByteArray(record, 0);
+        OptOutEntry.setTimestamp(record, 0, 0x7f66655453525150l);
+
+        final OptOutEntry entry = OptOutEntry.parse(record, 0);
+        Assert.assertArrayEquals(adsId, entry.advertisingId);
+        Assert.assertEquals(0x66655453525150l, entry.timestamp);
+    }
 }
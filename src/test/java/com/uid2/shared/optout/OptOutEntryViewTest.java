@@ -0,0 +1,75 @@
+package com.uid2.shared.optout;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OptOutEntryViewTest {
+    @Test
+    public void readEntryFields() {
+        final byte[] idHash = OptOutUtils.hexToByteArray("101112131415161718191a1b1c1d1e1f202122232425262728292a2b2c2d2e2f");
+        final byte[] adsId = OptOutUtils.hexToByteArray("303132333435363738393a3b3c3d3e3f404142434445464748494a4b4c4d4e4f");
+        final byte[] timestamp = OptOutUtils.hexToByteArray("50515253545556");
+        final byte metadata = 0x54;
+
+        final byte[] records = new byte[2 * OptOutConst.EntrySize];
+        final int offset = OptOutConst.EntrySize;
+        System.arraycopy(idHash, 0, records, offset, OptOutConst.Sha256Bytes);
+        System.arraycopy(adsId, 0, records, offset + OptOutConst.Sha256Bytes, OptOutConst.Sha256Bytes);
+        System.arraycopy(timestamp, 0, records, offset + OptOutConst.Sha256Bytes * 2, Long.BYTES - 1);
+        records[offset + OptOutConst.EntrySize - 1] = metadata;
+
+        final OptOutEntryView view = new OptOutEntryView(records, 1);
+        Assert.assertEquals(offset, view.offset());
+        Assert.assertEquals(0x56555453525150l, view.timestamp());
+        Assert.assertEquals(metadata, view.metadata());
+        Assert.assertEquals(0x14, view.identityType());
+        Assert.assertEquals(1, view.recordVersion());
+        Assert.assertTrue(view.identityHashEquals(idHash));
+        Assert.assertArrayEquals(idHash, view.identityHash());
+
+        final byte[] rawAdsId = new byte[OptOutConst.Sha256Bytes];
+        view.copyRawAdvertisingIdTo(rawAdsId, 0);
+        Assert.assertArrayEquals(adsId, rawAdsId);
+
+        Assert.assertEquals(OptOutEntry.parse(records, offset), view.toEntry());
+    }
+
+    @Test
+    public void compareIdentityHash() {
+        final OptOutEntry small = OptOutEntry.newTestEntry(1, 100);
+        final OptOutEntry large = OptOutEntry.newTestEntry(2, 50);
+        final byte[] store = new OptOutCollection(new OptOutEntry[]{small, large}).getStore();
+
+        final OptOutEntryView first = new OptOutEntryView(store, 0);
+        final OptOutEntryView second = new OptOutEntryView(store, 1);
+        Assert.assertTrue(first.compareIdentityHash(second) < 0);
+        Assert.assertTrue(second.compareIdentityHash(small.identityHash) > 0);
+        Assert.assertEquals(0, first.compareIdentityHash(small.identityHash));
+        Assert.assertEquals(0, first.moveTo(1).compareIdentityHash(second));
+    }
+
+    @Test
+    public void forEachViewReusesView() {
+        final OptOutEntry[] entries = new OptOutEntry[10];
+        for (int i = 0; i < entries.length; ++i) {
+            entries[i] = OptOutEntry.newRandom();
+        }
+        final OptOutCollection collection = new OptOutCollection(entries);
+
+        final List<OptOutEntry> visited = new ArrayList<>();
+        final List<OptOutEntryView> views = new ArrayList<>();
+        collection.forEachView(view -> {
+            visited.add(view.toEntry());
+            if (!views.contains(view)) views.add(view);
+        });
+
+        Assert.assertEquals(1, views.size());
+        Assert.assertEquals(entries.length, visited.size());
+        for (int i = 0; i < entries.length; ++i) {
+            Assert.assertEquals(entries[i], visited.get(i));
+        }
+    }
+}
@@ -93,6 +93,28 @@ public class OptOutHeapTest {
         }
     }
 
+    @Test
+    public void testParallelSortMatchesSequential() {
+        // large enough to be split across several sort tasks
+        final int entries = 300000;
+        final byte[] store = new byte[entries * OptOutConst.EntrySize];
+        OptOutUtils.rand.nextBytes(store);
+        for (int i = 1; i < entries; i += 7) {
+            // duplicate identity hashes with different advertising ids and timestamps
+            System.arraycopy(store, (i - 1) * OptOutConst.EntrySize, store, i * OptOutConst.EntrySize, OptOutConst.Sha256Bytes);
+        }
+        OptOutHeap heap = new OptOutHeap(entries);
+        heap.add(new OptOutCollection(store));
+
+        for (boolean mergeDups : new boolean[]{false, true}) {
+            OptOutPartition sequential = heap.toPartition(mergeDups, 0, 1);
+            OptOutPartition parallel = heap.toPartition(mergeDups, 0, 4);
+            assertEquals(sequential.size(), parallel.size());
+            assertArrayEquals(sequential.getStore(), parallel.getStore());
+        }
+        assertTrue(heap.toPartition(true, 0, 4).size() < entries);
+    }
+
     @Test
     public void testAutoGrow() {
         OptOutHeap heap = new OptOutHeap(1);
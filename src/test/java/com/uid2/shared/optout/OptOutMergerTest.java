@@ -0,0 +1,84 @@
+package com.uid2.shared.optout;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OptOutMergerTest {
+    @Test
+    public void mergeNothing_writesNothing() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, OptOutMerger.merge(Collections.emptyList(), out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void mergeSingle_sameAsInput() throws IOException {
+        OptOutPartition partition = newPartition(5, 1, 2, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, OptOutMerger.merge(Collections.singletonList(partition), out));
+        assertArrayEquals(partition.getStore(), out.toByteArray());
+    }
+
+    @Test
+    public void mergeDups_keepsMaxTimestamp() throws IOException {
+        OptOutHeap h1 = new OptOutHeap(1);
+        h1.add(OptOutEntry.newTestEntry(1, 2));
+        h1.add(OptOutEntry.newTestEntry(3, 9));
+        OptOutHeap h2 = new OptOutHeap(1);
+        h2.add(OptOutEntry.newTestEntry(1, 5));
+        h2.add(OptOutEntry.newTestEntry(2, 4));
+        h2.add(OptOutEntry.newTestEntry(3, 1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = OptOutMerger.merge(Arrays.asList(h1.toPartition(false), h2.toPartition(false)), out);
+        assertEquals(3, written);
+
+        OptOutPartition merged = new OptOutPartition(out.toByteArray());
+        assertEquals(5, merged.getOptOutTimestamp(OptOutEntry.idHashFromLong(1)));
+        assertEquals(4, merged.getOptOutTimestamp(OptOutEntry.idHashFromLong(2)));
+        assertEquals(9, merged.getOptOutTimestamp(OptOutEntry.idHashFromLong(3)));
+    }
+
+    @Test
+    public void mergePartitionsAndDeltas_matchesHeapToPartition() throws IOException {
+        OptOutHeap all = new OptOutHeap(1);
+        List<OptOutPartition> inputs = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            OptOutHeap heap = new OptOutHeap(1);
+            for (int j = 0; j < 200; ++j) {
+                OptOutEntry entry = j % 4 == 0
+                    ? OptOutEntry.newTestEntry(OptOutUtils.rand.nextInt(50), OptOutUtils.rand.nextInt(1000))
+                    : OptOutEntry.newRandom();
+                heap.add(entry);
+                all.add(entry);
+            }
+            // inputs may themselves contain duplicates
+            inputs.add(heap.toPartition(i % 2 == 0));
+        }
+
+        Path file = Files.createTempFile(OptOutUtils.prefixPartitionFile, TestUtils.newSuffix());
+        long written = OptOutMerger.merge(inputs, file);
+
+        OptOutPartition expected = all.toPartition(true);
+        assertEquals(expected.size(), written);
+        assertArrayEquals(expected.getStore(), Files.readAllBytes(file));
+    }
+
+    private static OptOutPartition newPartition(long ts, long... ids) {
+        OptOutHeap heap = new OptOutHeap(1);
+        for (long id : ids) {
+            heap.add(OptOutEntry.newTestEntry(id, ts));
+        }
+        return heap.toPartition(true);
+    }
+}
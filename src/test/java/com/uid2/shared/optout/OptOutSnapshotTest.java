@@ -215,6 +215,49 @@ public class OptOutSnapshotTest {
         assertEquals(26, snapshot.getOptOutTimestamp(hash3));
     }
 
+    @Test
+    public void indexedPartition_matchesUnindexed() {
+        OptOutHeap heap = new OptOutHeap(1);
+        HashSet<OptOutEntry> entries = new HashSet<>();
+        for (int i = 0; i < 1000; ++i) {
+            OptOutEntry entry = OptOutEntry.newRandom();
+            entries.add(entry);
+            heap.add(entry);
+        }
+        // small ids share an all-zero prefix, so they all land in the first bucket
+        for (int i = 0; i < 10; ++i) {
+            OptOutEntry entry = OptOutEntry.newTestEntry(i, i);
+            entries.add(entry);
+            heap.add(entry);
+        }
+
+        for (int indexBits : new int[]{1, 4, 10, 16}) {
+            OptOutPartition snapshot = heap.toPartition(true, indexBits);
+            assertEquals(indexBits, snapshot.indexBits());
+            assertEquals(entries.size(), snapshot.size());
+
+            for (OptOutEntry entry : entries) {
+                assertTrue(snapshot.contains(entry.identityHash));
+                assertEquals(entry.timestamp, snapshot.getOptOutTimestamp(entry.identityHash));
+            }
+
+            for (int j = 0; j < 100; ++j) {
+                OptOutEntry testEntry = OptOutEntry.newRandom();
+                assertFalse(snapshot.contains(testEntry.identityHash));
+                assertEquals(-1, snapshot.getOptOutTimestamp(testEntry.identityHash));
+            }
+            assertFalse(snapshot.contains(OptOutUtils.onesHashBytes));
+        }
+    }
+
+    @Test
+    public void idealIndexBits_tests() {
+        assertEquals(0, OptOutPartition.idealIndexBits(1, 20));
+        assertEquals(10, OptOutPartition.idealIndexBits(1024, 20));
+        assertEquals(10, OptOutPartition.idealIndexBits(2000, 20));
+        assertEquals(16, OptOutPartition.idealIndexBits(50000000, 16));
+    }
+
     private void createFromN(int n) {
         OptOutHeap heap = new OptOutHeap(1);
         for (int i = 0; i < n; ++i) {
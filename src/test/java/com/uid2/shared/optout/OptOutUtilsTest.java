@@ -117,6 +117,24 @@ public class OptOutUtilsTest {
         }
     }
 
+    @Test
+    public void compareSha256_tests() {
+        byte[] x = new byte[OptOutConst.Sha256Bytes + 3];
+        byte[] y = new byte[OptOutConst.Sha256Bytes + 5];
+        for (int i = 0; i < 1000; ++i) {
+            OptOutUtils.rand.nextBytes(x);
+            OptOutUtils.rand.nextBytes(y);
+            // share a random length prefix so that later words are compared too
+            int shared = OptOutUtils.rand.nextInt(OptOutConst.Sha256Bytes + 1);
+            System.arraycopy(x, 3, y, 5, shared);
+
+            int cmp1 = OptOutUtils.compareByteRange(x, 3, y, 5, OptOutConst.Sha256Bytes);
+            int cmp2 = OptOutUtils.compareSha256(x, 3, y, 5);
+            assertEquals(Integer.signum(cmp1), Integer.signum(cmp2));
+            assertEquals(Integer.signum(cmp1), -Integer.signum(OptOutUtils.compareSha256(y, 5, x, 3)));
+        }
+    }
+
     @Test
     public void nullHash_tests() {
         assertTrue(OptOutUtils.isValidSha256Hex(OptOutUtils.nullHash));
@@ -0,0 +1,73 @@
+package com.uid2.shared.optout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RadixEntrySorterTest {
+    @Test
+    public void sortEmptyAndSingle() {
+        byte[] empty = new byte[OptOutConst.EntrySize];
+        RadixEntrySorter.sort(newRandomStore(1), 0, 0, empty);
+        assertArrayEquals(new byte[OptOutConst.EntrySize], empty);
+
+        byte[] one = newRandomStore(1);
+        assertArrayEquals(one, RadixEntrySorter.sort(new OptOutCollection(one)));
+    }
+
+    @Test
+    public void sortMatchesHeapSort() {
+        for (int entries : new int[]{2, 3, 17, 100, 1000, 50000}) {
+            byte[] store = newRandomStore(entries);
+            assertArrayEquals(heapSorted(store), RadixEntrySorter.sort(new OptOutCollection(store)));
+        }
+    }
+
+    @Test
+    public void sortWithDuplicateHashes() {
+        byte[] store = newRandomStore(10000);
+        for (int i = 1; i < 10000; ++i) {
+            // long runs of the same identity hash end up in a single bucket
+            if (i % 100 != 0) {
+                System.arraycopy(store, (i - 1) * OptOutConst.EntrySize, store, i * OptOutConst.EntrySize, OptOutConst.Sha256Bytes);
+            }
+        }
+        assertArrayEquals(heapSorted(store), RadixEntrySorter.sort(new OptOutCollection(store)));
+    }
+
+    @Test
+    public void sortRangeLeavesRestOfDestination() {
+        byte[] src = newRandomStore(1000);
+        byte[] dst = new byte[src.length];
+        Arrays.fill(dst, (byte) 0x5a);
+        RadixEntrySorter.sort(src, 100, 900, dst);
+
+        byte[] expected = heapSorted(Arrays.copyOfRange(src, 100 * OptOutConst.EntrySize, 900 * OptOutConst.EntrySize));
+        assertArrayEquals(expected, Arrays.copyOfRange(dst, 100 * OptOutConst.EntrySize, 900 * OptOutConst.EntrySize));
+        for (int i = 0; i < 100 * OptOutConst.EntrySize; ++i) {
+            assertEquals((byte) 0x5a, dst[i]);
+            assertEquals((byte) 0x5a, dst[dst.length - 1 - i]);
+        }
+    }
+
+    @Test
+    public void bucketBits() {
+        assertEquals(1, RadixEntrySorter.bucketBits(1));
+        assertEquals(18, RadixEntrySorter.bucketBits(1 << 20));
+        assertEquals(24, RadixEntrySorter.bucketBits(Integer.MAX_VALUE));
+    }
+
+    private static byte[] newRandomStore(int entries) {
+        byte[] store = new byte[entries * OptOutConst.EntrySize];
+        OptOutUtils.rand.nextBytes(store);
+        return store;
+    }
+
+    private static byte[] heapSorted(byte[] store) {
+        byte[] sorted = store.clone();
+        OptOutHeap.sortRange(sorted, 0, sorted.length / OptOutConst.EntrySize, new byte[OptOutConst.EntrySize]);
+        return sorted;
+    }
+}
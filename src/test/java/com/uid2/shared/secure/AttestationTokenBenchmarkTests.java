@@ -0,0 +1,37 @@
+package com.uid2.shared.secure;
+
+import com.uid2.shared.attest.AttestationToken;
+import com.uid2.shared.attest.AttestationTokenService;
+import junit.framework.TestCase;
+
+public class AttestationTokenBenchmarkTests extends TestCase {
+    private static final String ENCRYPTION_KEY = "attestation-token-secret";
+    private static final String SALT = "attestation-token-salt";
+
+    public void testBenchmarkValidateToken() {
+        final AttestationTokenService ats = new AttestationTokenService(ENCRYPTION_KEY, SALT, 3600);
+        final String attestationToken = ats.createToken("userToken").getEncodedAttestationToken();
+
+        // deriving the key per call is expensive, so only a handful of runs are needed to see the difference
+        final int uncachedRuns = 20;
+        long startUncached = System.nanoTime();
+        for (int i = 0; i < uncachedRuns; ++i) {
+            assertTrue(AttestationToken.fromEncrypted(attestationToken, ENCRYPTION_KEY, SALT).validate("userToken"));
+        }
+        long endUncached = System.nanoTime();
+
+        final int cachedRuns = 100000;
+        long startCached = System.nanoTime();
+        for (int i = 0; i < cachedRuns; ++i) {
+            assertTrue(ats.validateToken("userToken", attestationToken));
+        }
+        long endCached = System.nanoTime();
+
+        double uncachedPerCall = (endUncached - startUncached) / (uncachedRuns * 1.0);
+        double cachedPerCall = (endCached - startCached) / (cachedRuns * 1.0);
+
+        System.out.println("Validate with per-call key derivation (ms) = " + uncachedPerCall / (1000000 * 1.0));
+        System.out.println("Validate with cached key (ms) = " + cachedPerCall / (1000000 * 1.0));
+        System.out.println("Validate throughput with cached key (ops/s) = " + 1000000000.0 / cachedPerCall);
+    }
+}
@@ -93,6 +93,18 @@ public class AttestationTokenTest {
         assertThat(reconstructToken.getExpiresAt()).isBetween(expiryLowerBound, expiryUpperBound);
     }
 
+    @Test
+    public void testAttestationTokenDerivedKeyCompatibleWithPassphrase() throws Exception {
+        final AttestationTokenService ats = new AttestationTokenService(ENCRYPTION_KEY, SALT, 3600);
+        final AttestationToken token = new AttestationToken("userToken", Instant.now().plusSeconds(3600));
+
+        final String encodedWithPassphrase = token.encode(ENCRYPTION_KEY, SALT);
+        Assertions.assertTrue(ats.validateToken("userToken", encodedWithPassphrase));
+
+        final String encodedWithKey = token.encode(AttestationToken.getKeyFromPassword(ENCRYPTION_KEY, SALT));
+        Assertions.assertTrue(AttestationToken.fromEncrypted(encodedWithKey, ENCRYPTION_KEY, SALT).validate("userToken"));
+    }
+
     @Test
     public void testAttestationTokenExpiry() {
         Assertions.assertFalse(new AttestationToken(
@@ -0,0 +1,152 @@
+package com.uid2.shared.store;
+
+import com.uid2.shared.Utils;
+import com.uid2.shared.auth.ClientKey;
+import com.uid2.shared.cloud.InMemoryStorageMock;
+import com.uid2.shared.model.SaltEntry;
+import com.uid2.shared.store.parser.ClientParser;
+import com.uid2.shared.store.parser.ParsingResult;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class BenchmarkTests extends TestCase {
+    // client keys in the benchmark document, override with -Dstore.benchmark.clients=1000000
+    private static final int CLIENT_KEYS = Integer.getInteger("store.benchmark.clients", 100000);
+    private static final int RUNS = 5;
+    // salts per snapshot, production snapshots have 2^20
+    private static final int SALTS = Integer.getInteger("store.benchmark.salts", 1 << 20);
+
+    public void testBenchmarkClientParser() throws IOException {
+        final byte[] document = newClientKeysDocument(CLIENT_KEYS);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final ClientParser parser = new ClientParser();
+
+        // warm up both paths
+        assertEquals(CLIENT_KEYS, parseTree(document).size());
+        assertEquals(CLIENT_KEYS, parser.deserialize(new ByteArrayInputStream(document)).getData().size());
+
+        long treeBytes = threads.getThreadAllocatedBytes(threadId);
+        long treeStart = System.nanoTime();
+        for (int i = 0; i < RUNS; ++i) {
+            parseTree(document);
+        }
+        long treeEnd = System.nanoTime();
+        treeBytes = threads.getThreadAllocatedBytes(threadId) - treeBytes;
+
+        long streamBytes = threads.getThreadAllocatedBytes(threadId);
+        long streamStart = System.nanoTime();
+        for (int i = 0; i < RUNS; ++i) {
+            ParsingResult<Map<String, ClientKey>> result = parser.deserialize(new ByteArrayInputStream(document));
+            assertEquals(CLIENT_KEYS, (int) result.getCount());
+        }
+        long streamEnd = System.nanoTime();
+        streamBytes = threads.getThreadAllocatedBytes(threadId) - streamBytes;
+
+        System.out.println("Client Keys = " + CLIENT_KEYS + ", document bytes = " + document.length);
+        System.out.println("Tree Decode per Run (ms) = " + (treeEnd - treeStart) / (RUNS * 1000000.0)
+                + ", allocated MB per run = " + treeBytes / (RUNS * 1024.0 * 1024.0));
+        System.out.println("Streaming Parse per Run (ms) = " + (streamEnd - streamStart) / (RUNS * 1000000.0)
+                + ", allocated MB per run = " + streamBytes / (RUNS * 1024.0 * 1024.0));
+    }
+
+    public void testBenchmarkSaltLoad() throws Exception {
+        final InMemoryStorageMock storage = new InMemoryStorageMock();
+        storage.cloudFileSystemMock.put("salts.txt", newSaltsCsv(SALTS));
+        final JsonObject metadata = new JsonObject()
+                .put("version", 1)
+                .put("first_level", "first_level_salt_value")
+                .put("id_prefix", "a")
+                .put("id_secret", "m3yMIcbg9vCaFLJsn4m4PfruZnvAZ72OxmFG5QsGMOw=")
+                .put("salts", new JsonArray().add(new JsonObject()
+                        .put("effective", 1)
+                        .put("location", "salts.txt")
+                        .put("size", SALTS)));
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final RotatingSaltProvider provider = new RotatingSaltProvider(storage, "metadata");
+
+        // warm up
+        provider.loadContent(metadata);
+        forceHashedIds(provider);
+
+        long loadTime = 0, hashTime = 0, hashBytes = 0;
+        for (int i = 0; i < RUNS; ++i) {
+            long start = System.nanoTime();
+            provider.loadContent(metadata);
+            long end = System.nanoTime();
+            loadTime += end - start;
+
+            // the work every load used to do up front, now only done for entries whose hashed id is used
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            forceHashedIds(provider);
+            end = System.nanoTime();
+            hashTime += end - start;
+            hashBytes += threads.getThreadAllocatedBytes(threadId) - bytes;
+        }
+
+        // loading runs on a pool of its own, so its allocations aren't visible to this thread's counter
+        System.out.println("Salts = " + SALTS + ", cores = " + Runtime.getRuntime().availableProcessors());
+        System.out.println("Salt Load with Lazy Hashed Ids per Run (ms) = " + loadTime / (RUNS * 1000000.0));
+        System.out.println("Hashed Ids for All Salts per Run (ms) = " + hashTime / (RUNS * 1000000.0)
+                + ", allocated MB per run = " + hashBytes / (RUNS * 1024.0 * 1024.0));
+    }
+
+    private static long forceHashedIds(RotatingSaltProvider provider) {
+        long length = 0;
+        for (SaltEntry entry : provider.getSnapshots().get(0).getAllRotatingSalts()) {
+            length += entry.getHashedId().length();
+        }
+        return length;
+    }
+
+    private static byte[] newSaltsCsv(int salts) {
+        final Random random = new Random(salts);
+        final StringBuilder csv = new StringBuilder();
+        final byte[] salt = new byte[32];
+        for (int i = 0; i < salts; ++i) {
+            random.nextBytes(salt);
+            csv.append(i).append(',').append(1700000000000L + i).append(',')
+                    .append(Base64.getEncoder().encodeToString(salt)).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // the previous parser: whole document to a String, then to a JsonArray tree, then to client keys
+    private static Map<String, ClientKey> parseTree(byte[] document) throws IOException {
+        JsonArray keysSpec = Utils.toJsonArray(new ByteArrayInputStream(document));
+        Map<String, ClientKey> keyMap = new HashMap<>();
+        for (int i = 0; i < keysSpec.size(); ++i) {
+            ClientKey clientKey = ClientKey.valueOf(keysSpec.getJsonObject(i));
+            keyMap.put(clientKey.getKey(), clientKey);
+        }
+        return keyMap;
+    }
+
+    private static byte[] newClientKeysDocument(int clients) {
+        JsonArray keys = new JsonArray();
+        for (int i = 0; i < clients; ++i) {
+            keys.add(new JsonObject()
+                    .put("key", "UID2-C-L-" + i + "-abcdefghijklmnopqrstuvwxyz0123456789")
+                    .put("secret", Base64.getEncoder().encodeToString(("secret-" + i + "-0123456789abcdef").getBytes(StandardCharsets.UTF_8)))
+                    .put("name", "client " + i)
+                    .put("contact", "client" + i + "@example.com")
+                    .put("created", 1700000000L + i)
+                    .put("roles", new JsonArray().add("GENERATOR").add("MAPPER"))
+                    .put("site_id", 1 + i % 1000)
+                    .put("disabled", false));
+        }
+        return keys.encode().getBytes(StandardCharsets.UTF_8);
+    }
+}
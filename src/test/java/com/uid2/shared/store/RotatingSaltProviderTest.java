@@ -1,6 +1,7 @@
 package com.uid2.shared.store;
 
 import com.uid2.shared.cloud.ICloudStorage;
+import com.uid2.shared.model.SaltEntry;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.junit.jupiter.api.AfterEach;
@@ -10,12 +11,18 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
 
 public class RotatingSaltProviderTest {
@@ -170,4 +177,289 @@ public class RotatingSaltProviderTest {
         assertEquals(1, snapshot.getModifiedSince(Instant.now().minus(30, ChronoUnit.HOURS)).size());
         assertEquals(1000002, snapshot.getModifiedSince(Instant.now().minus(30, ChronoUnit.HOURS)).get(0).getId());
     }
+
+    @Test
+    public void loadBinarySaltsMatchesCsv() throws Exception {
+        final Instant generatedTime = Instant.now().minus(1, ChronoUnit.DAYS);
+        final Instant expireTime = Instant.now().plus(365, ChronoUnit.DAYS);
+        final long lastUpdated = generatedTime.toEpochMilli();
+
+        final int size = 1000;
+        final Random random = new Random(1);
+        final StringBuilder csv = new StringBuilder();
+        final SaltEntry[] entries = new SaltEntry[size];
+        for (int i = 0; i < size; ++i) {
+            final byte[] saltBytes = new byte[32];
+            random.nextBytes(saltBytes);
+            final String salt = Base64.getEncoder().encodeToString(saltBytes);
+            final long updated = i % 10 == 0 ? lastUpdated + i : lastUpdated - i;
+            entries[i] = new SaltEntry(1000000 + i, null, updated, salt);
+            csv.append(1000000 + i).append(',').append(updated).append(',').append(salt).append('\n');
+        }
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinarySaltFile.write(entries, binary);
+
+        final RotatingSaltProvider csvProvider = loadSingleSnapshot("salts.txt", csv.toString().getBytes(StandardCharsets.US_ASCII),
+                null, size, generatedTime, expireTime);
+        final RotatingSaltProvider binaryProvider = loadSingleSnapshot("salts.bin", binary.toByteArray(),
+                RotatingSaltProvider.SaltFileFormatBinary, size, generatedTime, expireTime);
+
+        final ISaltProvider.ISaltSnapshot csvSnapshot = csvProvider.getSnapshot(Instant.now());
+        final ISaltProvider.ISaltSnapshot binarySnapshot = binaryProvider.getSnapshot(Instant.now());
+        assertTrue(binarySnapshot instanceof RotatingSaltProvider.MappedSaltSnapshot);
+        assertEquals(csvSnapshot.getFirstLevelSalt(), binarySnapshot.getFirstLevelSalt());
+
+        for (int i = 0; i < 10000; ++i) {
+            final byte[] identity = new byte[32];
+            random.nextBytes(identity);
+            assertSameEntry(csvSnapshot.getRotatingSalt(identity), binarySnapshot.getRotatingSalt(identity));
+            // decoded once, later lookups return the same entry
+            assertSame(binarySnapshot.getRotatingSalt(identity), binarySnapshot.getRotatingSalt(identity));
+        }
+
+        final SaltEntry[] csvAll = csvSnapshot.getAllRotatingSalts();
+        final SaltEntry[] binaryAll = binarySnapshot.getAllRotatingSalts();
+        assertSame(binaryAll, binarySnapshot.getAllRotatingSalts());
+        assertEquals(csvAll.length, binaryAll.length);
+        for (int i = 0; i < csvAll.length; ++i) {
+            assertSameEntry(csvAll[i], binaryAll[i]);
+        }
+
+        final List<SaltEntry> csvModified = csvSnapshot.getModifiedSince(generatedTime);
+        final List<SaltEntry> binaryModified = binarySnapshot.getModifiedSince(generatedTime);
+        assertEquals(size / 10, binaryModified.size());
+        assertEquals(csvModified.size(), binaryModified.size());
+        for (int i = 0; i < csvModified.size(); ++i) {
+            assertSameEntry(csvModified.get(i), binaryModified.get(i));
+        }
+        // the cached result holds the entries, rather than creating them from the file again
+        assertSame(binaryModified.get(0), binarySnapshot.getModifiedSince(generatedTime).get(0));
+    }
+
+    @Test
+    public void loadBinarySaltsSizeMismatchThrows() throws Exception {
+        final Instant generatedTime = Instant.now().minus(1, ChronoUnit.DAYS);
+        final Instant expireTime = Instant.now().plus(365, ChronoUnit.DAYS);
+        final SaltEntry[] entries = new SaltEntry[]{
+                new SaltEntry(1000000, null, generatedTime.toEpochMilli(), "salt0"),
+                new SaltEntry(1000001, null, generatedTime.toEpochMilli(), "salt1")};
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinarySaltFile.write(entries, binary);
+
+        assertThrows(IllegalStateException.class, () -> loadSingleSnapshot("salts.bin", binary.toByteArray(),
+                RotatingSaltProvider.SaltFileFormatBinary, 3, generatedTime, expireTime));
+    }
+
+    @Test
+    public void hashedIdIsEncodedOnDemand() {
+        final RotatingSaltProvider.IdHashingScheme scheme =
+                new RotatingSaltProvider.IdHashingScheme("a", "m3yMIcbg9vCaFLJsn4m4PfruZnvAZ72OxmFG5QsGMOw=");
+        final RotatingSaltProvider.SaltEntryBuilder builder = new RotatingSaltProvider.SaltEntryBuilder(scheme);
+
+        final SaltEntry entry = builder.toEntry("1000002,1614556800000,salt");
+        assertEquals(1000002, entry.getId());
+        assertEquals(1614556800000L, entry.getLastUpdated());
+        assertEquals("salt", entry.getSalt());
+        assertEquals(scheme.encode(1000002), entry.getHashedId());
+        assertSame(entry.getHashedId(), entry.getHashedId());
+    }
+
+    @Test
+    public void parseSaltsInChunksMatchesSingleChunk() {
+        final RotatingSaltProvider.SaltEntryBuilder builder = new RotatingSaltProvider.SaltEntryBuilder(
+                new RotatingSaltProvider.IdHashingScheme("a", "m3yMIcbg9vCaFLJsn4m4PfruZnvAZ72OxmFG5QsGMOw="));
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            csv.append(1000000 + i).append(',').append(1614556800000L + i).append(",salt").append(i);
+            // mixed line endings, and no newline after the last line
+            if (i < 999) csv.append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        final byte[] data = csv.toString().getBytes(StandardCharsets.US_ASCII);
+
+        final SaltEntry[] expected = new SaltEntry[1000];
+        assertEquals(1000, RotatingSaltProvider.parseSalts(data, expected, builder, 1));
+        for (int chunks : new int[]{2, 7, 64, 999, 2000}) {
+            final SaltEntry[] entries = new SaltEntry[1000];
+            assertEquals(1000, RotatingSaltProvider.parseSalts(data, entries, builder, chunks));
+            for (int i = 0; i < entries.length; ++i) {
+                assertEquals(1000000 + i, entries[i].getId());
+                assertSameEntry(expected[i], entries[i]);
+            }
+        }
+    }
+
+    @Test
+    public void parseSaltsStreamedInBlocksMatchesWholeFile() throws Exception {
+        final RotatingSaltProvider.SaltEntryBuilder builder = new RotatingSaltProvider.SaltEntryBuilder(
+                new RotatingSaltProvider.IdHashingScheme("a", "m3yMIcbg9vCaFLJsn4m4PfruZnvAZ72OxmFG5QsGMOw="));
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            csv.append(1000000 + i).append(',').append(1614556800000L + i).append(",salt").append(i);
+            if (i < 999) csv.append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        final byte[] data = csv.toString().getBytes(StandardCharsets.US_ASCII);
+
+        final SaltEntry[] expected = new SaltEntry[1000];
+        assertEquals(1000, RotatingSaltProvider.parseSalts(data, expected, builder, 1));
+        // blocks shorter than a line, splitting lines and line endings, and larger than the whole file
+        for (int blockBytes : new int[]{4, 27, 100, 4096, data.length, 1 << 20}) {
+            final SaltEntry[] entries = new SaltEntry[1000];
+            assertEquals(1000, RotatingSaltProvider.parseSalts(new ByteArrayInputStream(data), entries, builder, blockBytes, 4));
+            for (int i = 0; i < entries.length; ++i) {
+                assertSameEntry(expected[i], entries[i]);
+            }
+        }
+
+        assertThrows(IllegalStateException.class, () -> RotatingSaltProvider.parseSalts(
+                new ByteArrayInputStream(data), new SaltEntry[999], builder, 100, 4));
+    }
+
+    @Test
+    public void parseSaltsTrailingNewlineAndTooManyLines() {
+        final RotatingSaltProvider.SaltEntryBuilder builder = new RotatingSaltProvider.SaltEntryBuilder(
+                new RotatingSaltProvider.IdHashingScheme("a", "m3yMIcbg9vCaFLJsn4m4PfruZnvAZ72OxmFG5QsGMOw="));
+        final byte[] data = "1,2,salt1\n2,3,salt2\n".getBytes(StandardCharsets.US_ASCII);
+
+        final SaltEntry[] entries = new SaltEntry[3];
+        assertEquals(2, RotatingSaltProvider.parseSalts(data, entries, builder, 2));
+        assertEquals("salt2", entries[1].getSalt());
+        assertNull(entries[2]);
+
+        assertThrows(IllegalStateException.class, () -> RotatingSaltProvider.parseSalts(data, new SaltEntry[1], builder, 2));
+    }
+
+    @Test
+    public void modifiedSinceIsSortedSuffixByLastUpdated() {
+        final Instant now = Instant.now();
+        final SaltEntry[] entries = new SaltEntry[]{
+                new SaltEntry(0, "h0", 300, "s0"),
+                new SaltEntry(1, "h1", 100, "s1"),
+                new SaltEntry(2, "h2", 300, "s2"),
+                new SaltEntry(3, "h3", 200, "s3"),
+                null,
+                new SaltEntry(5, "h5", 100, "s5")};
+        final RotatingSaltProvider.SaltSnapshot snapshot = new RotatingSaltProvider.SaltSnapshot(
+                now, now.plusSeconds(60), entries, "first_level_salt_value");
+
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(0)), 1, 5, 3, 0, 2);
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(100)), 1, 5, 3, 0, 2);
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(101)), 3, 0, 2);
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(300)), 0, 2);
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(301)));
+
+        // a repeated timestamp returns the same view, which refers to the loaded entries
+        final List<SaltEntry> modified = snapshot.getModifiedSince(Instant.ofEpochMilli(101));
+        assertSame(modified, snapshot.getModifiedSince(Instant.ofEpochMilli(101)));
+        assertSame(entries[3], modified.get(0));
+        assertThrows(UnsupportedOperationException.class, () -> modified.remove(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> modified.get(3));
+    }
+
+    @Test
+    public void modifiedSinceWithWideTimestampRange() {
+        final Instant now = Instant.now();
+        final SaltEntry[] entries = new SaltEntry[]{
+                new SaltEntry(0, "h0", Long.MAX_VALUE, "s0"),
+                new SaltEntry(1, "h1", Long.MIN_VALUE, "s1"),
+                new SaltEntry(2, "h2", 0, "s2"),
+                new SaltEntry(3, "h3", Long.MAX_VALUE, "s3")};
+        final RotatingSaltProvider.SaltSnapshot snapshot = new RotatingSaltProvider.SaltSnapshot(
+                now, now.plusSeconds(60), entries, "first_level_salt_value");
+
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(0)), 2, 0, 3);
+        assertIds(snapshot.getModifiedSince(Instant.ofEpochMilli(1)), 0, 3);
+    }
+
+    private static void assertIds(List<SaltEntry> entries, long... ids) {
+        assertArrayEquals(ids, entries.stream().mapToLong(SaltEntry::getId).toArray());
+    }
+
+    @Test
+    public void snapshotTimelineMatchesLinearScan() {
+        final Random random = new Random(7);
+        final SaltEntry[] entries = new SaltEntry[]{new SaltEntry(0, "h0", 0, "s0")};
+        for (int run = 0; run < 100; ++run) {
+            final List<RotatingSaltProvider.SaltSnapshot> snapshots = new ArrayList<>();
+            for (int i = 0, n = random.nextInt(5); i < n; ++i) {
+                final long effective = random.nextInt(100);
+                // overlapping, adjacent and already expired snapshots
+                final long expires = effective + random.nextInt(50) - 5;
+                snapshots.add(new RotatingSaltProvider.SaltSnapshot(
+                        Instant.ofEpochMilli(effective), Instant.ofEpochMilli(expires), entries, "first_level_salt_value"));
+            }
+            snapshots.sort(Comparator.comparing(RotatingSaltProvider.SaltSnapshot::getEffective));
+            final RotatingSaltProvider.SnapshotTimeline timeline = new RotatingSaltProvider.SnapshotTimeline(snapshots);
+
+            // in order, as callers move forward in time, and at random to exercise cache misses
+            for (long t = -10; t < 200; ++t) {
+                assertSame(linearScan(snapshots, Instant.ofEpochMilli(t)), timeline.getSnapshot(t));
+            }
+            for (int i = 0; i < 200; ++i) {
+                final long t = random.nextInt(210) - 10;
+                assertSame(linearScan(snapshots, Instant.ofEpochMilli(t)), timeline.getSnapshot(t));
+            }
+            assertSame(linearScan(snapshots, Instant.ofEpochMilli(Long.MIN_VALUE)), timeline.getSnapshot(Long.MIN_VALUE));
+            assertSame(linearScan(snapshots, Instant.ofEpochMilli(Long.MAX_VALUE)), timeline.getSnapshot(Long.MAX_VALUE));
+        }
+    }
+
+    // getSnapshot as it was before transitions were precomputed
+    private static ISaltProvider.ISaltSnapshot linearScan(List<RotatingSaltProvider.SaltSnapshot> snapshots, Instant asOf) {
+        ISaltProvider.ISaltSnapshot current = null;
+        for (RotatingSaltProvider.SaltSnapshot snapshot : snapshots) {
+            if (!snapshot.isEffective(asOf)) break;
+            current = snapshot;
+        }
+        return current;
+    }
+
+    @Test
+    public void binarySaltFileRejectsTruncatedFile() throws Exception {
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinarySaltFile.write(new SaltEntry[]{
+                new SaltEntry(1, null, 2, "salt1"),
+                new SaltEntry(2, null, 3, "salt2")}, binary);
+        final byte[] bytes = binary.toByteArray();
+
+        assertEquals(2, new BinarySaltFile(ByteBuffer.wrap(bytes)).size());
+        assertThrows(IllegalArgumentException.class, () -> new BinarySaltFile(ByteBuffer.wrap(bytes, 0, bytes.length - 1).slice()));
+        bytes[0] = 0;
+        assertThrows(IllegalArgumentException.class, () -> new BinarySaltFile(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void binarySaltFileRejectsSaltsOfDifferentLength() {
+        assertThrows(IllegalArgumentException.class, () -> BinarySaltFile.write(new SaltEntry[]{
+                new SaltEntry(1, null, 2, "salt1"),
+                new SaltEntry(2, null, 3, "salt22")}, new ByteArrayOutputStream()));
+    }
+
+    private RotatingSaltProvider loadSingleSnapshot(String location, byte[] content, String format, int size,
+                                                    Instant effective, Instant expires) throws Exception {
+        final JsonObject saltsRef = new JsonObject()
+                .put("effective", effective.toEpochMilli())
+                .put("expires", expires.toEpochMilli())
+                .put("location", location)
+                .put("size", size);
+        if (format != null) saltsRef.put("format", format);
+        final JsonObject metadataJson = new JsonObject()
+                .put("version", 2)
+                .put("generated", effective.toEpochMilli())
+                .put("first_level", "first_level_salt_value")
+                .put("id_prefix", "a")
+                .put("id_secret", "m3yMIcbg9vCaFLJsn4m4PfruZnvAZ72OxmFG5QsGMOw=")
+                .put("salts", new JsonArray().add(saltsRef));
+
+        when(cloudStorage.download(location)).thenReturn(new ByteArrayInputStream(content));
+        final RotatingSaltProvider saltsProvider = new RotatingSaltProvider(cloudStorage, "metadata");
+        saltsProvider.loadContent(metadataJson);
+        return saltsProvider;
+    }
+
+    private static void assertSameEntry(SaltEntry expected, SaltEntry actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getHashedId(), actual.getHashedId());
+        assertEquals(expected.getLastUpdated(), actual.getLastUpdated());
+        assertEquals(expected.getSalt(), actual.getSalt());
+    }
 }
@@ -0,0 +1,99 @@
+package com.uid2.shared.store;
+
+import com.uid2.shared.model.SaltEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SaltEntryIndexerTest {
+    private static final int PRODUCTION_SIZE = 1_048_576;
+
+    @Test
+    public void productionSizeMappingIsUnchanged() {
+        final SaltEntry[] entries = new SaltEntry[PRODUCTION_SIZE];
+        for (int i = 0; i < entries.length; ++i) {
+            entries[i] = new SaltEntry(i, null, 0, "salt");
+        }
+        final Instant now = Instant.now();
+        final RotatingSaltProvider.SaltSnapshot snapshot = new RotatingSaltProvider.SaltSnapshot(
+                now, now.plusSeconds(60), entries, "first_level_salt_value");
+
+        final Random random = new Random(1);
+        final byte[] identity = new byte[32];
+        for (int i = 0; i < 1_000_000; ++i) {
+            random.nextBytes(identity);
+            assertEquals(productionIndex(identity), snapshot.getRotatingSalt(identity).getId());
+        }
+        // every value of the bytes that take part in the mapping
+        for (int b = 0; b < 256; ++b) {
+            identity[0] = (byte) b;
+            identity[1] = (byte) (255 - b);
+            identity[2] = (byte) (b * 7);
+            assertEquals(productionIndex(identity), snapshot.getRotatingSalt(identity).getId());
+        }
+    }
+
+    @Test
+    public void indexerIsChosenBySize() {
+        assertTrue(RotatingSaltProvider.SaltSnapshot.indexerFor(PRODUCTION_SIZE) instanceof ISaltProvider.OneMillionSaltEntryIndexer);
+        assertTrue(RotatingSaltProvider.SaltSnapshot.indexerFor(1 << 16) instanceof ISaltProvider.PowerOfTwoSaltEntryIndexer);
+        assertTrue(RotatingSaltProvider.SaltSnapshot.indexerFor(1 << 24) instanceof ISaltProvider.PowerOfTwoSaltEntryIndexer);
+        assertTrue(RotatingSaltProvider.SaltSnapshot.indexerFor(1_000_000) instanceof ISaltProvider.FastRangeSaltEntryIndexer);
+        assertTrue(RotatingSaltProvider.SaltSnapshot.indexerFor(8 * 3) instanceof ISaltProvider.FastRangeSaltEntryIndexer);
+    }
+
+    @Test
+    public void powerOfTwoUsesTopBits() {
+        final ISaltProvider.ISaltEntryIndexer indexer = new ISaltProvider.PowerOfTwoSaltEntryIndexer();
+        final byte[] identity = new byte[]{(byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 0x12, 0x34};
+        assertEquals(0, indexer.getIndex(identity, 1));
+        assertEquals(1, indexer.getIndex(identity, 2));
+        assertEquals(0xABC, indexer.getIndex(identity, 1 << 12));
+        assertEquals(0xABCDEF, indexer.getIndex(identity, 1 << 24));
+        assertEquals(0xABCDEF12 >>> 2, indexer.getIndex(identity, 1 << 30));
+    }
+
+    @Test
+    public void indexesAreInRangeAndEvenlySpread() {
+        final Random random = new Random(2);
+        final byte[] identity = new byte[32];
+        for (int size : new int[]{1, 2, 3, 8, 12, 1000, 1 << 16, 1_000_000, 1 << 24, Integer.MAX_VALUE}) {
+            final ISaltProvider.ISaltEntryIndexer indexer = RotatingSaltProvider.SaltSnapshot.indexerFor(size);
+            // sizes up to 16 are checked per index, larger ones in 16 ranges of (almost) equal width
+            final int buckets = Math.min(size, 16);
+            final int[] counts = new int[buckets];
+            final int samples = 160_000;
+            for (int i = 0; i < samples; ++i) {
+                random.nextBytes(identity);
+                final int index = indexer.getIndex(identity, size);
+                assertTrue(index >= 0 && index < size, "index " + index + " for size " + size);
+                ++counts[(int) ((long) index * buckets / size)];
+            }
+            for (int count : counts) {
+                final double expected = samples / (double) buckets;
+                assertTrue(Math.abs(count - expected) < expected * 0.05, "size " + size + ": " + count + " vs " + expected);
+            }
+        }
+    }
+
+    @Test
+    public void extremeIdentities() {
+        final byte[] zeros = new byte[32];
+        final byte[] ones = new byte[32];
+        Arrays.fill(ones, (byte) 0xFF);
+        for (int size : new int[]{1, 3, 1 << 16, 1_000_000, PRODUCTION_SIZE, Integer.MAX_VALUE}) {
+            final ISaltProvider.ISaltEntryIndexer indexer = RotatingSaltProvider.SaltSnapshot.indexerFor(size);
+            assertEquals(0, indexer.getIndex(zeros, size));
+            assertEquals(size - 1, indexer.getIndex(ones, size));
+        }
+    }
+
+    // the mapping production salts have always used
+    private static int productionIndex(byte[] shaBytes) {
+        return (((shaBytes[0] & 0xFF) << 12) | ((shaBytes[1] & 0xFF) << 4) | ((shaBytes[2] & 0xFF) & 0xF)) % PRODUCTION_SIZE;
+    }
+}